@@ -15,3 +15,6 @@
 #-keepclassmembers class fqcn.of.javascript.interface.for.webview {
 #   public *;
 #}
+
+# Accessors generated by gora annotation processor are loaded by name
+-keep class * implements org.db.gora.accessors.GeneratedAccessors { *; }
@@ -1,5 +1,7 @@
 package org.db.gora;
 
+import android.database.CharArrayBuffer;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.test.AndroidTestCase;
 
@@ -19,8 +21,15 @@ import org.db.gora.schema.SchemaUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class DatabaseHelperTest extends AndroidTestCase {
     SqlSchema schema;
@@ -95,6 +104,11 @@ public class DatabaseHelperTest extends AndroidTestCase {
         Assert.assertEquals(ids.length, 1);
         Assert.assertEquals(ids[0], 1L);
 
+        ids = sm.queryIds(Customer.class, where.compile(), null);
+        Assert.assertNotNull(ids);
+        Assert.assertEquals(ids.length, 1);
+        Assert.assertEquals(ids[0], 1L);
+
         ClosableIterator<Customer> itr = sm.query(Customer.class, whereClause, null);
         Assert.assertNotNull(itr);
         int cnt = 0;
@@ -118,6 +132,18 @@ public class DatabaseHelperTest extends AndroidTestCase {
             cursor.next();
         }
 
+        cursor = sm.queryFields(Customer.class, whereClause, null, "name", "modified", "last_name", "cloud_key");
+        CharArrayBuffer buffer = new CharArrayBuffer(4);
+        while (!cursor.eof()) {
+            cursor.copyStringToBuffer(0, buffer);
+            Assert.assertEquals(new String(buffer.data, 0, buffer.sizeCopied), "Sergey Kolupaev");
+            Assert.assertEquals(cursor.getLong(1), ((Date) cursor.getFieldValue(1)).getTime());
+            Assert.assertEquals(cursor.getString(2), "Колупаев");
+            Assert.assertTrue(cursor.isNull(3));
+            Assert.assertEquals(cursor.getLong(4), cursor.getId());
+            cursor.next();
+        }
+
         sm.delete(Customer.class, 1L);
         customer = sm.read(Customer.class, 1L);
         Assert.assertNull(customer);
@@ -171,6 +197,11 @@ public class DatabaseHelperTest extends AndroidTestCase {
 
         invc_item = new Invoice.InvoiceItem(invn2);
         invc_item.setQty(2.f);
+        invc_item.attributes = new ArrayList<>();
+        Invoice.InvoiceItemAttribute attr = new Invoice.InvoiceItemAttribute();
+        attr.name = "color";
+        attr.value = "red";
+        invc_item.attributes.add(attr);
         invoice.items.add(invc_item);
 
         InvoiceCashPayment cash = new InvoiceCashPayment();
@@ -232,7 +263,18 @@ public class DatabaseHelperTest extends AndroidTestCase {
             }
         }
 
-        invoice.items.remove(1);
+        // remove the item with the attribute, the attribute row is an orphan grandchild
+        int removedPos = "Item 2".equals(invoice.items.get(0).getName()) ? 0 : 1;
+        Invoice.InvoiceItem removed = invoice.items.remove(removedPos);
+        Assert.assertEquals(removed.attributes.size(), 1);
+        Invoice.InvoiceItem kept = invoice.items.get(0);
+        kept.attributes = new ArrayList<>();
+        for (int i = 0; i < 2; ++i) {
+            Invoice.InvoiceItemAttribute keptAttr = new Invoice.InvoiceItemAttribute();
+            keptAttr.name = "size";
+            keptAttr.value = Integer.toString(i);
+            kept.attributes.add(keptAttr);
+        }
         sm.write(invoice);
 
         invoice = sm.read(Invoice.class, 1L);
@@ -240,6 +282,11 @@ public class DatabaseHelperTest extends AndroidTestCase {
         Assert.assertNotNull(invoice.customer);
         Assert.assertNotNull(invoice.items);
         Assert.assertEquals(invoice.items.size(), 1);
+        Assert.assertEquals(sm.queryIds(Invoice.InvoiceItemAttribute.class, "invoice_item_id = ?",
+                new String[] {Long.toString(removed.getId())}, null).length, 0);
+        Assert.assertEquals(sm.queryIds(Invoice.InvoiceItemAttribute.class, "invoice_item_id = ?",
+                new String[] {Long.toString(kept.getId())}, null).length, 2);
+        Assert.assertEquals(invoice.items.get(0).attributes.size(), 2);
 
         long[] ids = sm.queryLinks(Invoice.class, Customer.class, 1L);
         Assert.assertNotNull(ids);
@@ -261,4 +308,676 @@ public class DatabaseHelperTest extends AndroidTestCase {
         Assert.assertEquals(invn1.image.length, 4);
     }
 
+    public void testWriteAll() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+
+        List<Inventory> items = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            Inventory invn = new Inventory();
+            invn.itemNo = i;
+            invn.name = String.format("Item %d", i);
+            invn.price = i + 0.99;
+            items.add(invn);
+        }
+
+        int written = sm.writeAll(items);
+        Assert.assertEquals(written, 100);
+        for (Inventory invn: items) {
+            Assert.assertTrue(invn.getId() > 0);
+        }
+
+        items.get(10).name = "Item X";
+        written = sm.writeAll(items);
+        Assert.assertEquals(written, 100);
+
+        Inventory invn = sm.read(Inventory.class, items.get(10).getId());
+        Assert.assertNotNull(invn);
+        Assert.assertEquals(invn.name, "Item X");
+    }
+
+    private List<Invoice> writeInvoices(SqliteManager sm, String prefix, int count) throws DataAccessException {
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < count; ++i) {
+            Invoice invoice = new Invoice();
+            invoice.name = prefix + i;
+            invoice.items = new ArrayList<>();
+            for (int j = 0; j <= i % 3; ++j) {
+                Invoice.InvoiceItem item = new Invoice.InvoiceItem();
+                item.setName(invoice.name + "/" + j);
+                item.attributes = new ArrayList<>();
+                Invoice.InvoiceItemAttribute attr = new Invoice.InvoiceItemAttribute();
+                attr.name = "parent";
+                attr.value = item.getName();
+                item.attributes.add(attr);
+                invoice.items.add(item);
+            }
+            invoices.add(invoice);
+        }
+        sm.writeAll(invoices);
+        return invoices;
+    }
+
+    private void assertInvoiceChildren(Invoice invoice, String prefix) {
+        int i = Integer.parseInt(invoice.name.substring(prefix.length()));
+        Assert.assertNotNull(invoice.items);
+        Assert.assertEquals(invoice.items.size(), i % 3 + 1);
+        for (Invoice.InvoiceItem item: invoice.items) {
+            Assert.assertEquals(item.invoiceId, invoice.getId());
+            Assert.assertTrue(item.getName().startsWith(invoice.name + "/"));
+            Assert.assertNotNull(item.attributes);
+            Assert.assertEquals(item.attributes.size(), 1);
+            Assert.assertEquals(item.attributes.get(0).value, item.getName());
+        }
+    }
+
+    public void testQueryPage() throws Exception {
+        SqliteManager sm = new SqliteManager(db, schema);
+        List<Invoice> invoices = writeInvoices(sm, "Page", 7);
+
+        ClosableIterator<Invoice> itr = sm.query(Invoice.class, "name LIKE ?", new String[] {"Page%"}, 3);
+        int cnt = 0;
+        while (itr.hasNext()) {
+            Invoice invoice = itr.next();
+            Assert.assertEquals(invoice.getId(), invoices.get(cnt).getId());
+            assertInvoiceChildren(invoice, "Page");
+            ++cnt;
+        }
+        itr.close();
+        Assert.assertEquals(cnt, 7);
+    }
+
+    public void testReadAll() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+        List<Invoice> invoices = writeInvoices(sm, "ReadAll", 6);
+        sm.delete(Invoice.class, invoices.get(2).getId());
+
+        long[] ids = new long[] {invoices.get(4).getId(), invoices.get(0).getId(), invoices.get(2).getId(),
+                invoices.get(5).getId(), 100000L, invoices.get(1).getId()};
+        List<Invoice> read = sm.readAll(Invoice.class, ids);
+        Assert.assertEquals(read.size(), 4);
+        Assert.assertEquals(read.get(0).getId(), invoices.get(4).getId());
+        Assert.assertEquals(read.get(1).getId(), invoices.get(0).getId());
+        Assert.assertEquals(read.get(2).getId(), invoices.get(5).getId());
+        Assert.assertEquals(read.get(3).getId(), invoices.get(1).getId());
+        for (Invoice invoice: read) {
+            assertInvoiceChildren(invoice, "ReadAll");
+        }
+    }
+
+    public void testEntityCache() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+        sm.setEntityCache(new EntityCache(16));
+
+        Customer customer = new Customer();
+        customer.name = "Sergey Kolupaev";
+        sm.write(customer);
+
+        Customer c1 = sm.read(Customer.class, customer.getId());
+        Customer c2 = sm.read(Customer.class, customer.getId());
+        Assert.assertNotNull(c1);
+        Assert.assertSame(c1, c2);
+
+        c1.firstName = "Sergey";
+        sm.write(c1);
+        c2 = sm.read(Customer.class, customer.getId());
+        Assert.assertFalse(c1 == c2);
+        Assert.assertEquals(c2.firstName, "Sergey");
+
+        sm.delete(Customer.class, customer.getId());
+        Assert.assertNull(sm.read(Customer.class, customer.getId()));
+    }
+
+    public void testQueryCache() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+        sm.setQueryCache(new QueryCache(16));
+
+        Customer customer = new Customer();
+        customer.name = "Query Cache";
+        sm.write(customer);
+
+        long[] ids1 = sm.queryIds(Customer.class, "name = ?", new String[] {"Query Cache"}, null);
+        Assert.assertEquals(ids1.length, 1);
+        Assert.assertEquals(sm.getQueryCache().size(), 1);
+        long[] ids2 = sm.queryIds(Customer.class, "name = ?", new String[] {"Query Cache"}, null);
+        Assert.assertTrue(Arrays.equals(ids1, ids2));
+
+        Customer customer2 = new Customer();
+        customer2.name = "Query Cache";
+        sm.write(customer2);
+        ids2 = sm.queryIds(Customer.class, "name = ?", new String[] {"Query Cache"}, null);
+        Assert.assertEquals(ids2.length, 2);
+
+        sm.delete(Customer.class, customer.getId());
+        sm.delete(Customer.class, customer2.getId());
+        ids2 = sm.queryIds(Customer.class, "name = ?", new String[] {"Query Cache"}, null);
+        Assert.assertEquals(ids2.length, 0);
+    }
+
+    public void testPrepareStatements() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+        sm.setPrepareStatements(true);
+
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 5; ++i) {
+            Customer customer = new Customer();
+            customer.name = "Prepared " + i;
+            sm.write(customer);
+            customer.firstName = "First " + i;
+            sm.write(customer);
+            customers.add(customer);
+        }
+
+        long[] ids = new long[customers.size()];
+        for (int i = 0; i < ids.length; ++i) {
+            ids[i] = customers.get(i).getId();
+        }
+        List<Customer> read = sm.readAll(Customer.class, ids);
+        Assert.assertEquals(read.size(), ids.length);
+        for (int i = 0; i < ids.length; ++i) {
+            Assert.assertEquals(read.get(i).firstName, "First " + i);
+        }
+
+        for (long id: ids) {
+            sm.delete(Customer.class, id);
+        }
+        sm.setPrepareStatements(false);
+        Assert.assertEquals(sm.readAll(Customer.class, ids).size(), 0);
+    }
+
+    public void testChangeTracker() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+        sm.setChangeTracker(new ChangeTracker(64));
+        SqliteManager other = new SqliteManager(db, schema);
+
+        Customer customer = new Customer();
+        customer.name = "Tracked";
+        sm.write(customer);
+        Assert.assertEquals(sm.getChangeTracker().size(), 1);
+
+        Customer changed = other.read(Customer.class, customer.getId());
+        changed.name = "Changed";
+        other.write(changed);
+
+        // only changed columns are updated: modified is set by onWrite
+        sm.write(customer);
+        Assert.assertEquals(other.read(Customer.class, customer.getId()).name, "Changed");
+
+        customer.firstName = "First";
+        sm.write(customer);
+        Customer c = other.read(Customer.class, customer.getId());
+        Assert.assertEquals(c.name, "Changed");
+        Assert.assertEquals(c.firstName, "First");
+
+        c = sm.read(Customer.class, customer.getId());
+        c.name = "Tracked";
+        sm.write(c);
+        Assert.assertEquals(other.read(Customer.class, customer.getId()).name, "Tracked");
+
+        sm.delete(Customer.class, customer.getId());
+        Assert.assertEquals(sm.getChangeTracker().size(), 0);
+    }
+
+    public void testDeleteAll() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+
+        long[] ids = new long[10];
+        for (int i = 0; i < ids.length; ++i) {
+            Invoice invoice = new Invoice();
+            invoice.name = "INVC:" + i;
+            invoice.items = new ArrayList<>();
+            Invoice.InvoiceItem item = new Invoice.InvoiceItem();
+            item.setQty(i);
+            item.attributes = new ArrayList<>();
+            Invoice.InvoiceItemAttribute attr = new Invoice.InvoiceItemAttribute();
+            attr.name = "no";
+            attr.value = Integer.toString(i);
+            item.attributes.add(attr);
+            invoice.items.add(item);
+            sm.write(invoice);
+            ids[i] = invoice.getId();
+        }
+
+        int deleted = sm.delete(Invoice.class, Arrays.copyOf(ids, 5));
+        Assert.assertEquals(deleted, 5);
+        Assert.assertEquals(sm.queryIds(Invoice.class, null, null, null).length, 5);
+        Assert.assertEquals(sm.queryIds(Invoice.InvoiceItem.class, null, null, null).length, 5);
+        Assert.assertEquals(sm.queryIds(Invoice.InvoiceItemAttribute.class, null, null, null).length, 5);
+
+        deleted = sm.deleteWhere(Invoice.class, "name LIKE ?", new String[] {"INVC:%"});
+        Assert.assertEquals(deleted, 5);
+        Assert.assertEquals(sm.queryIds(Invoice.InvoiceItem.class, null, null, null).length, 0);
+        Assert.assertEquals(sm.queryIds(Invoice.InvoiceItemAttribute.class, null, null, null).length, 0);
+    }
+
+    public void testRootKey() throws DataAccessException, DataIntegrityException {
+        SqlSchema rootSchema = SchemaUtils.createSchema();
+        rootSchema.registerRootKey(Invoice.class, "root_invoice_id");
+
+        File f = getContext().getDatabasePath("root.db");
+        if (f.exists()) {
+            boolean ok = f.delete();
+            Assert.assertTrue(ok);
+        }
+        DatabaseHelper h = new DatabaseHelper(getContext(), "root.db", rootSchema);
+        SQLiteDatabase rootDb = h.getWritableDatabase();
+        SqliteManager sm = new SqliteManager(rootDb, rootSchema);
+
+        Invoice invoice = new Invoice();
+        invoice.name = "ROOT";
+        invoice.items = new ArrayList<>();
+        Invoice.InvoiceItem item = new Invoice.InvoiceItem();
+        item.attributes = new ArrayList<>();
+        Invoice.InvoiceItemAttribute attr = new Invoice.InvoiceItemAttribute();
+        attr.name = "root";
+        item.attributes.add(attr);
+        invoice.items.add(item);
+        sm.write(invoice);
+
+        long rootId = DatabaseUtils.longForQuery(rootDb,
+                "SELECT root_invoice_id FROM InvoiceItemAttr WHERE id = ?", new String[] {Long.toString(attr.getId())});
+        Assert.assertEquals(rootId, invoice.getId());
+
+        Invoice inv = sm.read(Invoice.class, invoice.getId());
+        Assert.assertEquals(inv.items.size(), 1);
+        Assert.assertEquals(inv.items.get(0).attributes.size(), 1);
+
+        sm.delete(Invoice.class, invoice.getId());
+        Assert.assertEquals(sm.queryIds(Invoice.InvoiceItemAttribute.class, null, null, null).length, 0);
+        h.close();
+    }
+
+    public void testRootKeyUpgrade() throws DataAccessException, DataIntegrityException {
+        File f = getContext().getDatabasePath("rootup.db");
+        if (f.exists()) {
+            boolean ok = f.delete();
+            Assert.assertTrue(ok);
+        }
+
+        SqlSchema plainSchema = SchemaUtils.createSchema(1);
+        DatabaseHelper h = new DatabaseHelper(getContext(), "rootup.db", plainSchema);
+        SqliteManager sm = new SqliteManager(h.getWritableDatabase(), plainSchema);
+        List<Invoice> invoices = writeInvoices(sm, "Upgrade", 3);
+        h.close();
+
+        // upgrade adds the root key column to the existing tables and fills it for existing rows
+        SqlSchema rootSchema = SchemaUtils.createSchema(2);
+        rootSchema.registerRootKey(Invoice.class, "root_invoice_id");
+        h = new DatabaseHelper(getContext(), "rootup.db", rootSchema);
+        SQLiteDatabase upgradedDb = h.getWritableDatabase();
+        for (Invoice invoice: invoices) {
+            for (Invoice.InvoiceItem item: invoice.items) {
+                long rootId = DatabaseUtils.longForQuery(upgradedDb,
+                        "SELECT root_invoice_id FROM InvoiceItem WHERE id = ?", new String[] {Long.toString(item.getId())});
+                Assert.assertEquals(rootId, invoice.getId());
+                rootId = DatabaseUtils.longForQuery(upgradedDb,
+                        "SELECT root_invoice_id FROM InvoiceItemAttr WHERE id = ?", new String[] {Long.toString(item.attributes.get(0).getId())});
+                Assert.assertEquals(rootId, invoice.getId());
+            }
+        }
+
+        sm = new SqliteManager(upgradedDb, rootSchema);
+        assertInvoiceChildren(sm.read(Invoice.class, invoices.get(2).getId()), "Upgrade");
+        h.close();
+    }
+
+    public void testAsyncDataManager() throws Exception {
+        SqliteManager sm = new SqliteManager(db, schema);
+        AsyncDataManager adm = new AsyncDataManager(sm, 2);
+
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            Customer customer = new Customer();
+            customer.name = "Async" + i;
+            customers.add(customer);
+        }
+        Assert.assertEquals(adm.writeAll(customers, null).get().intValue(), 100);
+
+        final long[] found = new long[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        long[] ids = adm.queryIds(Customer.class, "name LIKE ?", new String[] {"Async%"}, null, new AsyncDataManager.Callback<long[]>() {
+            @Override
+            public void onSuccess(long[] result) {
+                found[0] = result.length;
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                found[0] = -1;
+                latch.countDown();
+            }
+        }).get();
+        Assert.assertEquals(ids.length, 100);
+        Assert.assertEquals(adm.readAll(Customer.class, ids, null).get().size(), 100);
+        Assert.assertEquals(adm.query(Customer.class, "name LIKE ?", new String[] {"Async%"}, null).get().size(), 100);
+
+        Assert.assertEquals(adm.delete(Customer.class, ids, null).get().intValue(), 100);
+        Assert.assertNull(adm.read(Customer.class, ids[0], null).get());
+        adm.shutdown();
+        Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(found[0], 100);
+    }
+
+    public void testConnectionPool() throws DataAccessException {
+        SqliteConnectionPool pool = new SqliteConnectionPool(helper, 2);
+
+        Customer customer = new Customer();
+        customer.name = "Pooled";
+        Assert.assertTrue(pool.write(customer));
+        Assert.assertEquals(pool.read(Customer.class, customer.getId()).name, "Pooled");
+
+        // readers see the last committed state while the writer is in transaction
+        db.beginTransaction();
+        try {
+            Customer uncommitted = new Customer();
+            uncommitted.name = "Uncommitted";
+            pool.getWriter().write(uncommitted);
+            Assert.assertEquals(pool.queryIds(Customer.class, "name = ?", new String[] {"Uncommitted"}, null).length, 0);
+        } finally {
+            db.endTransaction();
+        }
+
+        ClosableIterator<Customer> iterator = pool.query(Customer.class, null, null, 10);
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        Assert.assertEquals(count, 1);
+
+        pool.delete(Customer.class, customer.getId());
+        Assert.assertNull(pool.read(Customer.class, customer.getId()));
+        pool.close();
+    }
+
+    public void testKeysetPage() throws DataAccessException, DataIntegrityException {
+        SqliteManager sm = new SqliteManager(db, schema);
+
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 25; ++i) {
+            Customer customer = new Customer();
+            customer.name = "Page" + (i % 10);
+            customers.add(customer);
+        }
+        sm.writeAll(customers);
+
+        PredicateBuilder pb = sm.getPredicateBuilder(Customer.class);
+        PredicateBuilder.OrderByClause orderBy = pb.orderBy().orderBy("name", false);
+        long[] expected = sm.queryIds(Customer.class, null, null, orderBy.getKeyOrderByClause());
+
+        long[] actual = new long[0];
+        Object[] lastKey = null;
+        PredicateBuilder.Page page;
+        do {
+            page = sm.queryPage(Customer.class, null, orderBy, lastKey, 10);
+            int pos = actual.length;
+            actual = Arrays.copyOf(actual, pos + page.getIds().length);
+            System.arraycopy(page.getIds(), 0, actual, pos, page.getIds().length);
+            lastKey = page.getLastKey();
+        } while (page.hasMore());
+        Assert.assertTrue(Arrays.equals(actual, expected));
+        Assert.assertEquals(sm.readAll(Customer.class, sm.queryPage(Customer.class, null, orderBy, null, 5).getIds()).size(), 5);
+    }
+
+    public void testLazyEntityList() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+
+        List<Customer> customers = new ArrayList<>();
+        for (int i = 0; i < 50; ++i) {
+            Customer customer = new Customer();
+            customer.name = "Lazy" + i;
+            customers.add(customer);
+        }
+        sm.writeAll(customers);
+
+        long[] ids = sm.queryIds(Customer.class, "name LIKE ?", new String[] {"Lazy%"}, "id");
+        sm.delete(Customer.class, ids[7]);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LazyEntityList<Customer> list = new LazyEntityList<>(sm, Customer.class, ids, 10, 2, executor);
+        Assert.assertEquals(list.size(), 50);
+        for (int i = 0; i < list.size(); ++i) {
+            Customer customer = list.get(i);
+            if (i == 7) {
+                Assert.assertNull(customer);
+            } else {
+                Assert.assertEquals(customer.getId(), ids[i]);
+            }
+        }
+        Assert.assertEquals(list.get(3).getId(), ids[3]);
+        executor.shutdown();
+    }
+
+    static class CustomerName {
+        long id;
+        String name;
+        EntityType type;
+    }
+
+    public void testProjection() throws DataAccessException, DataIntegrityException {
+        SqliteManager sm = new SqliteManager(db, schema);
+
+        Customer customer = new Customer();
+        customer.name = "Projected";
+        customer.firstName = "First";
+        customer.getAddresses().add(new Address());
+        sm.write(customer);
+
+        List<CustomerName> names = sm.queryProjection(Customer.class, CustomerName.class, "name = ?", new String[] {"Projected"}, null);
+        Assert.assertEquals(names.size(), 1);
+        Assert.assertEquals(names.get(0).id, customer.getId());
+        Assert.assertEquals(names.get(0).name, "Projected");
+        Assert.assertEquals(names.get(0).type, EntityType.Regular);
+
+        List<Customer> partial = sm.queryPartial(Customer.class, "name = ?", new String[] {"Projected"}, null, "id", "firstName");
+        Assert.assertEquals(partial.size(), 1);
+        Assert.assertEquals(partial.get(0).getId(), customer.getId());
+        Assert.assertEquals(partial.get(0).firstName, "First");
+        Assert.assertNull(partial.get(0).name);
+        Assert.assertTrue(partial.get(0).getAddresses().isEmpty());
+    }
+
+    public void testQueryColumn() throws DataAccessException, DataIntegrityException {
+        SqliteManager sm = new SqliteManager(db, schema);
+
+        Invoice invoice = new Invoice();
+        invoice.name = "Column";
+        invoice.items = new ArrayList<>();
+        for (int i = 1; i <= 20; ++i) {
+            Invoice.InvoiceItem item = new Invoice.InvoiceItem();
+            item.setItemNo(i);
+            item.setQty(i);
+            item.price = 0.5 * i;
+            item.taxable = i % 2 == 0;
+            invoice.items.add(item);
+        }
+        sm.write(invoice);
+
+        String where = "invoice_id = ?";
+        String[] whereArgs = new String[] {Long.toString(invoice.getId())};
+        double[] prices = sm.queryDoubleColumn(Invoice.InvoiceItem.class, "price", where, whereArgs, "item_no");
+        Assert.assertEquals(prices.length, 20);
+        Assert.assertEquals(prices[19], 10.0, 0.0001);
+
+        int[] itemNos = sm.queryIntColumn(Invoice.InvoiceItem.class, "itemNo", where, whereArgs, "item_no");
+        Assert.assertEquals(itemNos[0], 1);
+        int[] taxable = sm.queryIntColumn(Invoice.InvoiceItem.class, "taxable", where, whereArgs, "item_no");
+        Assert.assertEquals(taxable[1], 1);
+
+        long[] ids = sm.queryLongColumn(Invoice.InvoiceItem.class, "id", where, whereArgs, null);
+        Assert.assertEquals(ids.length, 20);
+    }
+
+    public void testAggregate() throws DataAccessException, DataIntegrityException {
+        SqliteManager sm = new SqliteManager(db, schema);
+
+        Invoice invoice = new Invoice();
+        invoice.name = "Aggregate";
+        invoice.items = new ArrayList<>();
+        for (int i = 1; i <= 20; ++i) {
+            Invoice.InvoiceItem item = new Invoice.InvoiceItem();
+            item.setItemNo(i);
+            item.setQty(i);
+            item.price = 0.5 * i;
+            item.taxable = i % 2 == 0;
+            invoice.items.add(item);
+        }
+        sm.write(invoice);
+
+        String where = "invoice_id = ?";
+        String[] whereArgs = new String[] {Long.toString(invoice.getId())};
+
+        Assert.assertEquals(sm.count(Invoice.InvoiceItem.class, where, whereArgs), 20L);
+        PredicateBuilder.AggregateClause aggregate = sm.getPredicateBuilder(Invoice.InvoiceItem.class).aggregate()
+                .groupBy("taxable").count().sum("price").avg("qty");
+        PredicateBuilder.AggregateResult result = sm.queryAggregate(Invoice.InvoiceItem.class, aggregate, where, whereArgs);
+        Assert.assertEquals(result.getRowCount(), 2);
+        Assert.assertEquals(result.getLong(0, 0), 0L);
+        Assert.assertEquals(result.getLong(0, 1), 10L);
+        Assert.assertEquals(result.getDouble(0, 2), 50.0, 0.0001);
+        Assert.assertEquals(result.getDouble(1, 3), 11.0, 0.0001);
+    }
+
+    public void testLinkedPredicate() throws DataAccessException, DataIntegrityException {
+        SqliteManager sm = new SqliteManager(db, schema);
+        sm.setQueryCache(new QueryCache(16));
+
+        Customer alice = new Customer();
+        alice.name = "Alice";
+        sm.write(alice);
+        Customer bob = new Customer();
+        bob.name = "Bob";
+        sm.write(bob);
+
+        for (Customer customer: new Customer[] {alice, bob, alice}) {
+            Invoice invoice = new Invoice();
+            invoice.name = "Linked";
+            invoice.customerId = customer.getId();
+            sm.write(invoice);
+        }
+
+        PredicateBuilder.WhereClause customerWhere = sm.getPredicateBuilder(Customer.class).where();
+        customerWhere.like("name", "A%");
+        PredicateBuilder.WhereClause invoiceWhere = sm.getPredicateBuilder(Invoice.class).where();
+        invoiceWhere.linked(customerWhere).and().eq("name", "Linked");
+        PredicateBuilder.Predicate where = invoiceWhere.compile();
+        Assert.assertEquals(sm.queryIds(Invoice.class, where, null).length, 2);
+        Assert.assertEquals(sm.count(Invoice.class, where), 2L);
+
+        bob.name = "Anna";
+        sm.write(bob);
+        Assert.assertEquals(sm.queryIds(Invoice.class, where, null).length, 3);
+    }
+
+    public void testResolveLinks() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+
+        Customer customer = new Customer();
+        customer.name = "Linked Customer";
+        sm.write(customer);
+        Inventory inventory = new Inventory();
+        inventory.name = "Linked Item";
+        sm.write(inventory);
+
+        List<Invoice> invoices = new ArrayList<>();
+        for (int i = 0; i < 3; ++i) {
+            Invoice invoice = new Invoice();
+            invoice.name = "Resolve" + i;
+            invoice.customerId = i < 2 ? customer.getId() : 0;
+            invoice.items = new ArrayList<>();
+            invoice.items.add(new Invoice.InvoiceItem(inventory));
+            invoices.add(invoice);
+        }
+        sm.writeAll(invoices);
+
+        Map<Long, Customer> customers = sm.readLinked(invoices, Customer.class);
+        Assert.assertEquals(customers.size(), 1);
+        Assert.assertEquals(customers.get(customer.getId()).name, "Linked Customer");
+
+        List<Invoice.InvoiceItem> items = new ArrayList<>();
+        for (Invoice invoice: invoices) {
+            items.addAll(invoice.items);
+        }
+        sm.resolveLinks(items);
+        for (Invoice.InvoiceItem item: items) {
+            Assert.assertNotNull(item.inventory);
+            Assert.assertEquals(item.inventory.getId(), inventory.getId());
+        }
+    }
+
+    public void testFetchPlan() throws Exception {
+        SqliteManager sm = new SqliteManager(db, schema);
+        sm.setEntityCache(new EntityCache(16));
+
+        Inventory inventory = new Inventory();
+        inventory.name = "Plan Item";
+        sm.write(inventory);
+
+        Invoice invoice = new Invoice();
+        invoice.name = "Plan";
+        invoice.items = new ArrayList<>();
+        Invoice.InvoiceItem item = new Invoice.InvoiceItem(inventory);
+        item.attributes = new ArrayList<>();
+        Invoice.InvoiceItemAttribute attr = new Invoice.InvoiceItemAttribute();
+        attr.name = "color";
+        attr.value = "red";
+        item.attributes.add(attr);
+        invoice.items.add(item);
+        InvoiceCashPayment cash = new InvoiceCashPayment();
+        cash.amount = 10.;
+        invoice.getPayments().add(cash);
+        sm.write(invoice);
+
+        FetchPlan plan = new FetchPlan().include("items").resolveLinks(true);
+        Invoice read = sm.read(Invoice.class, invoice.getId(), plan);
+        Assert.assertNotNull(read);
+        Assert.assertEquals(read.items.size(), 1);
+        Assert.assertNull(read.items.get(0).attributes);
+        Assert.assertNotNull(read.items.get(0).inventory);
+        Assert.assertTrue(read.getPayments().isEmpty());
+        Assert.assertNull(sm.getEntityCache().get(Invoice.class, invoice.getId()));
+
+        List<Invoice> invoices = sm.readAll(Invoice.class, new long[] {invoice.getId()}, new FetchPlan().include("items.attributes"));
+        Assert.assertEquals(invoices.size(), 1);
+        Assert.assertEquals(invoices.get(0).items.get(0).attributes.size(), 1);
+        Assert.assertNull(invoices.get(0).items.get(0).inventory);
+        Assert.assertTrue(invoices.get(0).getPayments().isEmpty());
+
+        ClosableIterator<Invoice> itr = sm.query(Invoice.class, "name = ?", new String[] {"Plan"}, 16, new FetchPlan());
+        Assert.assertTrue(itr.hasNext());
+        read = itr.next();
+        Assert.assertNull(read.items);
+        itr.close();
+
+        read = sm.read(Invoice.class, invoice.getId(), null);
+        Assert.assertEquals(read.getPayments().size(), 1);
+        Assert.assertEquals(read.items.get(0).attributes.size(), 1);
+        Assert.assertSame(sm.getEntityCache().get(Invoice.class, invoice.getId()), read);
+    }
+
+    public void testFetchPlanWrite() throws DataAccessException {
+        SqliteManager sm = new SqliteManager(db, schema);
+        List<Invoice> invoices = writeInvoices(sm, "PlanWrite", 3);
+        Invoice invoice = invoices.get(2);
+        InvoiceCashPayment cash = new InvoiceCashPayment();
+        cash.amount = 10.;
+        invoice.getPayments().add(cash);
+        sm.write(invoice);
+
+        Invoice read = sm.read(Invoice.class, invoice.getId(), new FetchPlan().include("items"));
+        Assert.assertEquals(read.items.size(), 3);
+        Assert.assertTrue(read.getPayments().isEmpty());
+        read.items.remove(0);
+        sm.write(read);
+
+        read = sm.read(Invoice.class, invoice.getId());
+        Assert.assertEquals(read.getPayments().size(), 1);
+        Assert.assertEquals(read.items.size(), 2);
+        for (Invoice.InvoiceItem item: read.items) {
+            Assert.assertNotNull(item.attributes);
+            Assert.assertEquals(item.attributes.size(), 1);
+        }
+        Assert.assertEquals(sm.queryIds(Invoice.InvoiceItemAttribute.class, "value LIKE ?", new String[] {"PlanWrite2/%"}, null).length, 2);
+    }
+
 }
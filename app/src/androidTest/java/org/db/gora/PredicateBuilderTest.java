@@ -3,10 +3,12 @@ package org.db.gora;
 import junit.framework.Assert;
 import junit.framework.TestCase;
 
+import org.db.gora.schema.Customer;
 import org.db.gora.schema.EntityType;
 import org.db.gora.schema.Invoice;
 import org.db.gora.schema.SchemaUtils;
 
+import java.util.Arrays;
 import java.util.Date;
 
 public class PredicateBuilderTest extends TestCase {
@@ -64,6 +66,27 @@ public class PredicateBuilderTest extends TestCase {
 
     }
 
+    public void testInvoiceCompiledWhere() {
+        PredicateBuilder pb = new PredicateBuilder(schema.getTableData(Invoice.class));
+
+        PredicateBuilder.WhereClause wc = pb.where();
+        wc.eq("type", EntityType.Regular).and().gt("modified", new Date(111111)).or().set("id", new Long[]{1L,2L});
+        PredicateBuilder.Predicate predicate = wc.compile();
+        Assert.assertEquals(predicate.getWhereClause(), "((type = ?) AND (modified > ?)) OR ((id IN (?, ?)))");
+        Assert.assertTrue(Arrays.equals(predicate.getValues(), new Object[]{"Regular", 111111L, 1L, 2L}));
+        Assert.assertTrue(Arrays.equals(predicate.getWhereArgs(), new String[]{"Regular", "111111", "1", "2"}));
+
+        wc.clear();
+        wc.eq("type", EntityType.Deleted).and().gt("modified", new Date(222222)).or().set("id", new Long[]{3L,4L});
+        Assert.assertEquals(wc.compile().getWhereClause(), predicate.getWhereClause());
+
+        wc.clear();
+        wc.eq("name", null);
+        predicate = wc.compile();
+        Assert.assertEquals(predicate.getWhereClause(), "((name IS NULL))");
+        Assert.assertEquals(predicate.getValues().length, 0);
+    }
+
     public void testInvoiceOrderByBuilder() throws DataIntegrityException {
         PredicateBuilder pb = new PredicateBuilder(schema.getTableData(Invoice.class));
         Assert.assertNotNull(pb);
@@ -76,4 +99,57 @@ public class PredicateBuilderTest extends TestCase {
         String actual = obc.getOrderByClause();
         Assert.assertEquals(actual, "modified DESC, id ASC");
     }
+
+    public void testInvoiceKeyset() throws DataIntegrityException {
+        PredicateBuilder pb = new PredicateBuilder(schema.getTableData(Invoice.class));
+
+        PredicateBuilder.OrderByClause obc = pb.orderBy();
+        obc.orderBy("name").thenBy("modified", false);
+        Assert.assertEquals(obc.getKeyOrderByClause(), "name ASC, modified DESC, id ASC");
+
+        PredicateBuilder.Predicate seek = obc.seek(new Object[]{"I001", new Date(111111), 5L});
+        Assert.assertEquals(seek.getWhereClause(),
+                "(name > ?) OR (name = ? AND (modified < ? OR modified IS NULL)) OR (name = ? AND modified = ? AND id > ?)");
+        Assert.assertTrue(Arrays.equals(seek.getValues(), new Object[]{"I001", "I001", 111111L, "I001", 111111L, 5L}));
+
+        seek = obc.seek(new Object[]{"I001", null, 5L});
+        Assert.assertEquals(seek.getWhereClause(), "(name > ?) OR (name = ? AND modified IS NULL AND id > ?)");
+    }
+
+    public void testInvoiceAggregate() throws DataIntegrityException {
+        PredicateBuilder pb = new PredicateBuilder(schema.getTableData(Invoice.InvoiceItem.class));
+
+        PredicateBuilder.AggregateClause ac = pb.aggregate();
+        ac.groupBy("taxable").count().sum("price").max("qty");
+        Assert.assertEquals(ac.getSelectClause(), "taxable, COUNT(*), SUM(price), MAX(qty)");
+        Assert.assertEquals(ac.getGroupByClause(), "taxable");
+
+        try {
+            ac.avg("unknown");
+            Assert.fail();
+        } catch (DataIntegrityException ignored) {
+        }
+    }
+
+    public void testInvoiceLinkedWhere() throws DataIntegrityException {
+        PredicateBuilder pb = new PredicateBuilder(schema.getTableData(Invoice.class), schema);
+        PredicateBuilder customers = new PredicateBuilder(schema.getTableData(Customer.class), schema);
+
+        PredicateBuilder.WhereClause customerWhere = customers.where();
+        customerWhere.like("name", "A%");
+        PredicateBuilder.WhereClause wc = pb.where();
+        wc.eq("type", EntityType.Regular).and().linked(customerWhere);
+
+        PredicateBuilder.Predicate predicate = wc.compile();
+        Assert.assertEquals(predicate.getWhereClause(),
+                "((type = ?) AND (customer_id IN (SELECT id FROM Customer WHERE ((name LIKE ?)))))");
+        Assert.assertTrue(Arrays.equals(predicate.getValues(), new Object[]{"Regular", "A%"}));
+        Assert.assertTrue(predicate.isLinked());
+
+        try {
+            pb.where().linked("name", customerWhere);
+            Assert.fail();
+        } catch (DataIntegrityException ignored) {
+        }
+    }
 }
@@ -9,7 +9,9 @@ import org.db.gora.schema.Invoice;
 import org.db.gora.schema.InvoiceCashPayment;
 import org.db.gora.schema.InvoiceCreditPayment;
 import org.db.gora.schema.InvoiceCustomer;
+import org.db.gora.schema.SchemaBuilder;
 import org.db.gora.schema.SchemaUtils;
+import org.db.gora.schema.Shipment;
 
 import java.util.List;
 
@@ -66,4 +68,40 @@ public class SchemaBuilderTest extends TestCase {
         Assert.assertEquals(il.size(), 1);
         Assert.assertEquals(il.get(0).detailClass, Invoice.class);
     }
+
+    public void testRootKeyAnnotation() throws DataIntegrityException {
+        SqlSchema schema = new SqlSchema() {
+            @Override
+            public int getDatabaseVersion() {
+                return 1;
+            }
+        };
+        SchemaBuilder.registerEntity(Shipment.class, schema);
+
+        Assert.assertNull(schema.getTableData(Shipment.class).rootKey);
+        for (Class<?> clazz: new Class<?>[] {Shipment.ShipmentPackage.class, Shipment.ShipmentItem.class}) {
+            TableData tableData = schema.getTableData(clazz);
+            Assert.assertNotNull(tableData.rootKey);
+            Assert.assertEquals(tableData.rootKey.columnName, "root_shipment_id");
+            Assert.assertEquals(tableData.rootClass, Shipment.class);
+        }
+        Assert.assertNull(mSchema.getTableData(Invoice.InvoiceItem.class).rootKey);
+    }
+
+    public void testGeneratedAccessors() {
+        // accessors are generated by gora annotation processor, see app/build.gradle
+        String prefix = Invoice.InvoiceItem.class.getPackage().getName() + ".Invoice_InvoiceItem_GoraAccessors";
+        TableData itemData = mSchema.getTableData(Invoice.InvoiceItem.class);
+        Assert.assertNotNull(itemData);
+        Assert.assertTrue(itemData.getFieldByName("qty").valueAccessor.getClass().getName().startsWith(prefix));
+        Assert.assertTrue(itemData.getFieldByName("price").valueAccessor.getClass().getName().startsWith(prefix));
+        Assert.assertTrue(itemData.getFieldByName("price").valueAccessor instanceof DoubleColumnAccessor);
+
+        prefix = Invoice.class.getName() + "_GoraAccessors";
+        List<ChildTableData> childrenData = mSchema.getChildren(Invoice.class);
+        Assert.assertNotNull(childrenData);
+        for (ChildTableData child: childrenData) {
+            Assert.assertTrue(child.valueAccessor.getClass().getName().startsWith(prefix));
+        }
+    }
 }
@@ -85,9 +85,11 @@ public class Invoice extends Entity {
         public void setQty(float qty) { this.qty = qty; }
 
         @SqlColumn(name="invn_id")
-        @SqlLinkedEntity(entity=Inventory.class, whenBroken=WhenLinkBroken.UNLINK)
+        @SqlLinkedEntity(entity=Inventory.class, whenBroken=WhenLinkBroken.UNLINK, fetchInto="inventory")
         public long invn_id;
 
+        public transient Inventory inventory;
+
         @SqlChild
         public List<InvoiceItemAttribute> attributes;
 
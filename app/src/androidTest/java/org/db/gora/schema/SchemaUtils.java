@@ -9,19 +9,35 @@ public class SchemaUtils {
 
     public static SqlSchema getSchema() throws DataIntegrityException {
         if (sSchema == null) {
-            sSchema = new SqlSchema() {
-                @Override
-                public int getDatabaseVersion() {
-                    return sDatabaseVersion;
-                }
-            };
-
-            SchemaBuilder.registerEntity(Invoice.class, sSchema);
-            SchemaBuilder.registerEntity(Customer.class, sSchema);
-            SchemaBuilder.registerEntity(Inventory.class, sSchema);
+            sSchema = createSchema();
         }
         return sSchema;
     }
 
+    public static SqlSchema createSchema() throws DataIntegrityException {
+        return registerEntities(new SqlSchema() {
+            @Override
+            public int getDatabaseVersion() {
+                return sDatabaseVersion;
+            }
+        });
+    }
+
+    public static SqlSchema createSchema(final int databaseVersion) throws DataIntegrityException {
+        return registerEntities(new SqlSchema() {
+            @Override
+            public int getDatabaseVersion() {
+                return databaseVersion;
+            }
+        });
+    }
+
+    static SqlSchema registerEntities(SqlSchema schema) throws DataIntegrityException {
+        SchemaBuilder.registerEntity(Invoice.class, schema);
+        SchemaBuilder.registerEntity(Customer.class, schema);
+        SchemaBuilder.registerEntity(Inventory.class, schema);
+        return schema;
+    }
+
     static SqlSchema sSchema;
 }
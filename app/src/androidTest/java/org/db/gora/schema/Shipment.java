@@ -0,0 +1,30 @@
+package org.db.gora.schema;
+
+import java.util.List;
+
+@SqlTable(name="Shipment", rootKey="root_shipment_id")
+public class Shipment extends Row {
+    @SqlColumn(name="name")
+    public String name;
+
+    @SqlChild
+    public List<ShipmentPackage> packages;
+
+    @SqlTable(name="ShipmentPackage")
+    public static class ShipmentPackage extends Row {
+        @SqlColumn(name="shipment_id", fk=true)
+        public long shipmentId;
+
+        @SqlChild
+        public List<ShipmentItem> items;
+    }
+
+    @SqlTable(name="ShipmentItem")
+    public static class ShipmentItem extends Row {
+        @SqlColumn(name="package_id", fk=true)
+        public long packageId;
+
+        @SqlColumn(name="name")
+        public String name;
+    }
+}
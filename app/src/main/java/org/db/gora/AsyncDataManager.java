@@ -0,0 +1,307 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.db.gora;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous facade of {@link DataManager}.
+ * <p>Reads and queries run on the reader executor, writes and deletes are serialized on a single writer thread.
+ * Every method returns a {@link Future}; the optional {@link Callback} is invoked when the operation completes.
+ * <p>{@link Future#cancel(boolean)} with mayInterruptIfRunning interrupts a running query:
+ * objects and IDs are read in pages and the interrupt is checked between pages.
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+public class AsyncDataManager {
+    /**
+     * Number of objects read between cancellation checks
+     */
+    public final static int READ_PAGE_SIZE = 64;
+
+    /**
+     * Receives the result of an asynchronous operation.
+     * Not called if the operation is cancelled.
+     */
+    public interface Callback<T> {
+        void onSuccess(T result);
+        void onError(Exception e);
+    }
+
+    final DataManager mWriter;
+    final DataManager mReader;
+    final ExecutorService mReadExecutor;
+    final ExecutorService mWriteExecutor;
+    final boolean mOwnsReadExecutor;
+    volatile Executor mCallbackExecutor;
+
+    /**
+     * @param manager       data manager used for reads and writes
+     * @param readerThreads number of reader threads
+     */
+    public AsyncDataManager(DataManager manager, int readerThreads) {
+        this(manager, manager, Executors.newFixedThreadPool(readerThreads, new NamedThreadFactory("gora-reader")), true);
+    }
+
+    /**
+     * @param writer        data manager used for writes and deletes
+     * @param reader        data manager used for reads and queries
+     * @param readExecutor  executor of reads and queries. Not shut down by {@link #shutdown()}
+     */
+    public AsyncDataManager(DataManager writer, DataManager reader, ExecutorService readExecutor) {
+        this(writer, reader, readExecutor, false);
+    }
+
+    private AsyncDataManager(DataManager writer, DataManager reader, ExecutorService readExecutor, boolean ownsReadExecutor) {
+        if (writer == null || reader == null || readExecutor == null) {
+            throw new NullPointerException("AsyncDataManager: data manager or executor is null");
+        }
+        mWriter = writer;
+        mReader = reader;
+        mReadExecutor = readExecutor;
+        mOwnsReadExecutor = ownsReadExecutor;
+        mWriteExecutor = Executors.newSingleThreadExecutor(new NamedThreadFactory("gora-writer"));
+    }
+
+    public Executor getCallbackExecutor() {
+        return mCallbackExecutor;
+    }
+
+    /**
+     * Sets executor of callbacks, e.g. one posting to the main thread.
+     * If null callbacks are invoked on the worker thread.
+     */
+    public void setCallbackExecutor(Executor executor) {
+        mCallbackExecutor = executor;
+    }
+
+    /**
+     * Stops the writer thread and the reader threads created by this instance.
+     * Submitted operations are completed.
+     */
+    public void shutdown() {
+        mWriteExecutor.shutdown();
+        if (mOwnsReadExecutor) {
+            mReadExecutor.shutdown();
+        }
+    }
+
+    /**
+     * See {@link DataManager#read(Class, long)}
+     */
+    public <T> Future<T> read(final Class<T> clazz, final long id, Callback<T> callback) {
+        return submit(mReadExecutor, new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return mReader.read(clazz, id);
+            }
+        }, callback);
+    }
+
+    /**
+     * See {@link DataManager#readAll(Class, long[])}
+     * IDs are read in pages of {@link #READ_PAGE_SIZE}.
+     */
+    public <T> Future<List<T>> readAll(final Class<T> clazz, final long[] ids, Callback<List<T>> callback) {
+        return submit(mReadExecutor, new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                if (ids == null || ids.length <= READ_PAGE_SIZE) {
+                    return mReader.readAll(clazz, ids);
+                }
+                List<T> result = new ArrayList<>(ids.length);
+                for (int i = 0; i < ids.length; i += READ_PAGE_SIZE) {
+                    checkInterrupted();
+                    result.addAll(mReader.readAll(clazz, Arrays.copyOfRange(ids, i, Math.min(i + READ_PAGE_SIZE, ids.length))));
+                }
+                return result;
+            }
+        }, callback);
+    }
+
+    /**
+     * See {@link DataManager#queryIds(Class, String, String[], String)}
+     */
+    public Future<long[]> queryIds(final Class<?> clazz, final String where, final String[] whereArgs, final String orderBy, Callback<long[]> callback) {
+        return submit(mReadExecutor, new Callable<long[]>() {
+            @Override
+            public long[] call() throws Exception {
+                return mReader.queryIds(clazz, where, whereArgs, orderBy);
+            }
+        }, callback);
+    }
+
+    /**
+     * Queries objects according to Where clause and collects them into a list.
+     * See {@link DataManager#query(Class, String, String[], int)}
+     */
+    public <T> Future<List<T>> query(final Class<T> clazz, final String where, final String[] whereArgs, Callback<List<T>> callback) {
+        return submit(mReadExecutor, new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                List<T> result = new ArrayList<>();
+                ClosableIterator<T> iterator = mReader.query(clazz, where, whereArgs, READ_PAGE_SIZE);
+                try {
+                    int count = 0;
+                    while (iterator.hasNext()) {
+                        if (++count % READ_PAGE_SIZE == 0) {
+                            checkInterrupted();
+                        }
+                        result.add(iterator.next());
+                    }
+                } finally {
+                    iterator.close();
+                }
+                return result;
+            }
+        }, callback);
+    }
+
+    /**
+     * See {@link DataManager#queryKeywords(Class, String)}
+     */
+    public Future<long[]> queryKeywords(final Class<?> clazz, final String criteria, Callback<long[]> callback) {
+        return submit(mReadExecutor, new Callable<long[]>() {
+            @Override
+            public long[] call() throws Exception {
+                return mReader.queryKeywords(clazz, criteria);
+            }
+        }, callback);
+    }
+
+    /**
+     * See {@link DataManager#write(Object)}
+     */
+    public <T> Future<Boolean> write(final T entity, Callback<Boolean> callback) {
+        return submit(mWriteExecutor, new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return mWriter.write(entity);
+            }
+        }, callback);
+    }
+
+    /**
+     * See {@link DataManager#writeAll(Collection)}
+     */
+    public <T> Future<Integer> writeAll(final Collection<T> entities, Callback<Integer> callback) {
+        return submit(mWriteExecutor, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return mWriter.writeAll(entities);
+            }
+        }, callback);
+    }
+
+    /**
+     * See {@link DataManager#delete(Class, long[])}
+     */
+    public Future<Integer> delete(final Class<?> clazz, final long[] ids, Callback<Integer> callback) {
+        return submit(mWriteExecutor, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return mWriter.delete(clazz, ids);
+            }
+        }, callback);
+    }
+
+    /**
+     * See {@link DataManager#deleteWhere(Class, String, String[])}
+     */
+    public Future<Integer> deleteWhere(final Class<?> clazz, final String where, final String[] whereArgs, Callback<Integer> callback) {
+        return submit(mWriteExecutor, new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return mWriter.deleteWhere(clazz, where, whereArgs);
+            }
+        }, callback);
+    }
+
+    static void checkInterrupted() throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException("AsyncDataManager: Operation is cancelled");
+        }
+    }
+
+    <T> Future<T> submit(ExecutorService executor, Callable<T> callable, Callback<T> callback) {
+        Task<T> task = new Task<>(callable, callback);
+        executor.execute(task);
+        return task;
+    }
+
+    final class Task<T> extends FutureTask<T> {
+        final Callback<T> mCallback;
+
+        Task(Callable<T> callable, Callback<T> callback) {
+            super(callable);
+            mCallback = callback;
+        }
+
+        @Override
+        protected void done() {
+            if (mCallback == null || isCancelled()) return;
+
+            Runnable notify = new Runnable() {
+                @Override
+                public void run() {
+                    T result;
+                    try {
+                        result = get();
+                    } catch (Exception e) {
+                        Throwable cause = e.getCause();
+                        mCallback.onError(cause instanceof Exception ? (Exception) cause : e);
+                        return;
+                    }
+                    mCallback.onSuccess(result);
+                }
+            };
+            Executor executor = mCallbackExecutor;
+            if (executor != null) {
+                executor.execute(notify);
+            } else {
+                notify.run();
+            }
+        }
+    }
+
+    static final class NamedThreadFactory implements ThreadFactory {
+        final String mName;
+        final AtomicInteger mCount = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, mName + "-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora;
+
+import android.util.LruCache;
+
+import java.util.Map;
+
+/**
+ * Snapshots of column values of rows read or written by {@link SqliteManager}.
+ * Keyed by storage class and record ID.
+ * <p>On write, the entity is compared with its snapshot: unchanged rows are not updated
+ * and changed rows are updated with only the changed columns. Rows without a snapshot are fully updated.
+ * <p>The snapshots reflect the database only if all changes to the tracked tables go through
+ * the {@link SqliteManager} owning the tracker.
+ *
+ * See {@link SqliteManager#setChangeTracker(ChangeTracker)}
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+public class ChangeTracker {
+    final LruCache<EntityCache.EntityKey, Object[]> mSnapshots;
+    long mGeneration;
+    int mUpdates;
+
+    /**
+     * @param maxRows maximum number of tracked rows
+     */
+    public ChangeTracker(int maxRows) {
+        mSnapshots = new LruCache<>(maxRows);
+    }
+
+    Object[] get(Class<?> clazz, long id) {
+        return mSnapshots.get(new EntityCache.EntityKey(clazz, id));
+    }
+
+    /**
+     * Stores the snapshot of a row written in the current transaction
+     */
+    void put(Class<?> clazz, long id, Object[] values) {
+        mSnapshots.put(new EntityCache.EntityKey(clazz, id), values);
+    }
+
+    /**
+     * Stores the snapshot of a row read if no write has started since generation was taken
+     */
+    void put(Class<?> clazz, long id, Object[] values, long generation) {
+        synchronized (this) {
+            if (generation == mGeneration && mUpdates == 0) {
+                mSnapshots.put(new EntityCache.EntityKey(clazz, id), values);
+            }
+        }
+    }
+
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Called when write transaction starts. Snapshots of rows read are not stored until {@link #endUpdate()}
+     */
+    synchronized void beginUpdate() {
+        mUpdates++;
+        mGeneration++;
+    }
+
+    /**
+     * Called when write transaction ends
+     */
+    synchronized void endUpdate() {
+        if (mUpdates > 0) {
+            mUpdates--;
+        }
+        mGeneration++;
+    }
+
+    public void evict(Class<?> clazz, long id) {
+        synchronized (this) {
+            mGeneration++;
+            mSnapshots.remove(new EntityCache.EntityKey(clazz, id));
+        }
+    }
+
+    /**
+     * Evicts snapshots of all rows of the class
+     */
+    public void evictClass(Class<?> clazz) {
+        synchronized (this) {
+            mGeneration++;
+            for (Map.Entry<EntityCache.EntityKey, Object[]> entry: mSnapshots.snapshot().entrySet()) {
+                if (entry.getKey().clazz == clazz) {
+                    mSnapshots.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    public void evictAll() {
+        synchronized (this) {
+            mGeneration++;
+            mSnapshots.evictAll();
+        }
+    }
+
+    public int size() {
+        return mSnapshots.size();
+    }
+}
@@ -27,6 +27,8 @@ public class ChildTableData {
 
     /** Parent class/table */
 	public Class<?> parent;
+    /** Child field name, See {@link FetchPlan} */
+	public String fieldName;
     /** Child accessor */
 	public ChildAccessor valueAccessor;
 
@@ -14,6 +14,11 @@
 
 package org.db.gora;
 
+import android.database.CharArrayBuffer;
+
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Defines the basic data access methods
  * See {@link org.db.gora.SqliteManager}
@@ -46,6 +51,32 @@ public interface DataManager {
      */
     <T> ClosableIterator<T> query(Class<T> clazz, String where, String[] whereArgs) throws DataAccessException;
 
+    /**
+     * Queries objects according to Where clause.
+     * Objects are read in pages; children of a page are loaded with one query per child table.
+     *
+     * @param clazz     Storage class registered with {@link SqlSchema}
+     * @param where     Where clause
+     * @param whereArgs Where clause arguments
+     * @param pageSize  Number of objects read at once
+     * @return          {@link org.db.gora.ClosableIterator} instance.
+     * @throws          DataAccessException
+     */
+    <T> ClosableIterator<T> query(Class<T> clazz, String where, String[] whereArgs, int pageSize) throws DataAccessException;
+
+    /**
+     * Queries objects according to Where clause and reads the children named by the fetch plan.
+     *
+     * @param clazz     Storage class registered with {@link SqlSchema}
+     * @param where     Where clause
+     * @param whereArgs Where clause arguments
+     * @param pageSize  Number of objects read at once
+     * @param plan      Children to read, null reads all children
+     * @return          {@link org.db.gora.ClosableIterator} instance.
+     * @throws          DataAccessException
+     */
+    <T> ClosableIterator<T> query(Class<T> clazz, String where, String[] whereArgs, int pageSize, FetchPlan plan) throws DataAccessException;
+
     /**
      * Reads an object with children by ID
      *
@@ -56,6 +87,38 @@ public interface DataManager {
      */
     <T> T read(Class<T> clazz, long id) throws DataAccessException;
 
+    /**
+     * Reads an object by ID with the children named by the fetch plan
+     *
+     * @param clazz     Storage class registered with {@link SqlSchema}
+     * @param id        Record ID
+     * @param plan      Children to read, null reads all children
+     * @return          Instance of object or null
+     * @throws          DataAccessException
+     */
+    <T> T read(Class<T> clazz, long id, FetchPlan plan) throws DataAccessException;
+
+    /**
+     * Reads objects with children by IDs
+     *
+     * @param clazz     Storage class registered with {@link SqlSchema}
+     * @param ids       Record IDs
+     * @return          List of objects in order of IDs. Missing records are skipped.
+     * @throws          DataAccessException
+     */
+    <T> List<T> readAll(Class<T> clazz, long[] ids) throws DataAccessException;
+
+    /**
+     * Reads objects by IDs with the children named by the fetch plan
+     *
+     * @param clazz     Storage class registered with {@link SqlSchema}
+     * @param ids       Record IDs
+     * @param plan      Children to read, null reads all children
+     * @return          List of objects in order of IDs. Missing records are skipped.
+     * @throws          DataAccessException
+     */
+    <T> List<T> readAll(Class<T> clazz, long[] ids, FetchPlan plan) throws DataAccessException;
+
     /**
      * Stores an object with children
      *
@@ -65,6 +128,15 @@ public interface DataManager {
      */
     <T> boolean write(T entity) throws DataAccessException;
 
+    /**
+     * Stores a collection of objects with children in a single transaction
+     *
+     * @param entities  Objects to store
+     * @return          number of stored objects. Objects skipped by {@link EntityEvent#onWrite()} are not counted
+     * @throws          DataAccessException
+     */
+    <T> int writeAll(Collection<T> entities) throws DataAccessException;
+
     /**
      * Deletes an object with children by ID
      *
@@ -74,6 +146,27 @@ public interface DataManager {
      */
     void delete(Class<?> clazz, long id) throws DataAccessException;
 
+    /**
+     * Deletes objects with children by IDs in one transaction
+     *
+     * @param clazz     Storage class registered with {@link SqlSchema}
+     * @param ids       Record IDs
+     * @return          Number of deleted objects
+     * @throws          DataAccessException
+     */
+    int delete(Class<?> clazz, long[] ids) throws DataAccessException;
+
+    /**
+     * Deletes objects with children that match where clause in one transaction
+     *
+     * @param clazz     Storage class registered with {@link SqlSchema}
+     * @param where     SQL where clause
+     * @param whereArgs SQL where clause arguments
+     * @return          Number of deleted objects
+     * @throws          DataAccessException
+     */
+    int deleteWhere(Class<?> clazz, String where, String[] whereArgs) throws DataAccessException;
+
     /**
      * Queries record IDs of detail class that are linked to master record ID.
      *
@@ -91,12 +184,45 @@ public interface DataManager {
         long getId() throws DataAccessException;
         Object getFieldValue(int fieldNo) throws DataAccessException;
         FieldDataType getFieldType(int fieldNo);
+
+        /**
+         * Typed accessors read the current row without boxing.
+         * Date fields are returned by getLong as milliseconds, Boolean fields by getInt as 1 or 0.
+         * Null values are returned as 0 or null; check them with isNull.
+         */
+        boolean isNull(int fieldNo) throws DataAccessException;
+        long getLong(int fieldNo) throws DataAccessException;
+        int getInt(int fieldNo) throws DataAccessException;
+        double getDouble(int fieldNo) throws DataAccessException;
+        String getString(int fieldNo) throws DataAccessException;
+
+        /**
+         * Copies a text value into the buffer, the buffer array is reallocated only if it is too small
+         */
+        void copyStringToBuffer(int fieldNo, CharArrayBuffer buffer) throws DataAccessException;
+
         boolean eof();
         boolean next();
         void close();
     }
     FieldCursor queryFields(Class<?> clazz, String where, String[] whereArgs, String ...fields) throws DataAccessException, DataIntegrityException;
 
+    /**
+     * Queries a subset of columns into projection objects.
+     * Fields of the projection class are named after storage class fields or table columns.
+     * Children are not read and {@link EntityEvent#onRead()} is not called.
+     *
+     * @param clazz             Storage class registered with {@link SqlSchema}
+     * @param projectionClass   Class with a default constructor and fields to read
+     * @param where             Where clause
+     * @param whereArgs         Where clause arguments
+     * @param orderBy           OrderBy clause
+     * @return                  list of projection objects
+     * @throws                  DataAccessException
+     * @throws                  DataIntegrityException if a projection field does not match a column
+     */
+    <P> List<P> queryProjection(Class<?> clazz, Class<P> projectionClass, String where, String[] whereArgs, String orderBy) throws DataAccessException, DataIntegrityException;
+
     /**
      * Queries full-text search table.
      * The result is sorted according to criteria relevance
@@ -109,4 +235,9 @@ public interface DataManager {
      */
     long[] queryKeywords(Class<?> clazz, String criteria) throws DataAccessException, DataIntegrityException;
 
+    /**
+     * @return schema of the storage classes
+     */
+    SqlSchema getSchema();
+
 }
@@ -21,9 +21,12 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Extends {@link SQLiteOpenHelper} to support SQLite database schema modification
@@ -211,6 +214,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         Map<String, DbColumnType> dbColumns = new HashMap<>();
         List<DbIndexInfo> dbIndice = new ArrayList<>();
+        Set<Class<?>> backfillRoots = new HashSet<>();
 
         String pkColumn;
         for (TableData tableData: sqlSchema.tableMap.values()) {
@@ -224,6 +228,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     tableInfo.columns.add(column);
                 }
             }
+            if (tableData.rootKey != null) {
+                tableInfo.columns.add(getColumnInfo(tableData.rootKey));
+            }
 
             Cursor fieldCursor = db.rawQuery(String.format("Pragma table_info('%s');", tableData.tableName), null);
             while (fieldCursor.moveToNext()) {
@@ -271,6 +278,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                         String colSyntax = getColumnSyntax(tableInfo.tableName, cInfo);
                         Log.i(TAG, colSyntax);
                         db.execSQL(colSyntax);
+                        if (tableData.rootKey != null && tableData.rootKey.columnName.equalsIgnoreCase(cInfo.columnName)) {
+                            backfillRoots.add(tableData.rootClass);
+                        }
                     }
                 }
             } else {
@@ -279,7 +289,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 db.execSQL(tblSyntax);
             }
 
-            if (tableData.indice != null) {
+            IndexData[] indice = tableData.indice;
+            if (tableData.rootKey != null) {
+                IndexData rootIndex = new IndexData();
+                rootIndex.fields = new FieldData[] {tableData.rootKey};
+                if (indice != null) {
+                    indice = Arrays.copyOf(indice, indice.length + 1);
+                    indice[indice.length - 1] = rootIndex;
+                } else {
+                    indice = new IndexData[] {rootIndex};
+                }
+            }
+
+            if (indice != null) {
                 dbIndice.clear();
                 Cursor indexCursor = db.rawQuery(String.format("Pragma index_list('%s');", tableData.tableName), null);
                 while (indexCursor.moveToNext()) {
@@ -306,7 +328,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     indexCursor.close();
                 }
 
-                for (IndexData indexData: tableData.indice) {
+                for (IndexData indexData: indice) {
                     DbIndexInfo foundIndex = null;
                     for (DbIndexInfo indexInfo: dbIndice) {
                         if (indexData.fields.length == indexInfo.columns.size()) {
@@ -349,6 +371,40 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 }
             }
         }
+
+        for (Class<?> rootClass: backfillRoots) {
+            backfillRootKey(db, sqlSchema, rootClass);
+        }
+    }
+
+    /**
+     * Populates root ID column of the aggregate descendant tables, level by level
+     */
+    static void backfillRootKey(SQLiteDatabase db, SqlSchema sqlSchema, Class<?> clazz) {
+        List<ChildTableData> children = sqlSchema.getChildren(clazz);
+        if (children == null) return;
+
+        TableData parentData = sqlSchema.getTableData(clazz);
+        for (ChildTableData child: children) {
+            for (Class<?> childClass: child.children) {
+                TableData childData = sqlSchema.getTableData(childClass);
+                if (childData == null || childData.rootKey == null || childData.foreignKey == null) continue;
+
+                String query;
+                if (parentData.rootKey == null) {
+                    query = String.format("UPDATE %s SET %s = %s", childData.tableName, childData.rootKey.columnName, childData.foreignKey.columnName);
+                } else {
+                    query = String.format("UPDATE %s SET %s = (SELECT p.%s FROM %s AS p WHERE p.%s = %s.%s)",
+                            childData.tableName, childData.rootKey.columnName,
+                            parentData.rootKey.columnName, parentData.tableName, parentData.primaryKey.columnName,
+                            childData.tableName, childData.foreignKey.columnName);
+                }
+                Log.i(TAG, query);
+                db.execSQL(query);
+
+                backfillRootKey(db, sqlSchema, childClass);
+            }
+        }
     }
 
     private static final String TAG = "GORA";
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora;
+
+import android.util.LruCache;
+
+import java.util.Map;
+
+/**
+ * LRU cache of entities read by {@link SqliteManager#read(Class, long)} and {@link SqliteManager#readAll(Class, long[])}.
+ * Keyed by storage class and record ID.
+ * <p>The cache is invalidated by {@link SqliteManager} writes and deletes.
+ * The cached instances are shared between readers and should not be modified without writing them back.
+ * <p>By default the size of the cache is the number of entities. Override {@link #sizeOf(Class, long, Object)}
+ * to limit the cache by estimated entity size in bytes.
+ *
+ * See {@link SqliteManager#setEntityCache(EntityCache)}
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+public class EntityCache {
+    final LruCache<EntityKey, Object> mCache;
+    long mGeneration;
+    int mUpdates;
+
+    /**
+     * @param maxSize maximum number of entities, or the maximum sum of
+     *                {@link #sizeOf(Class, long, Object)} if overridden
+     */
+    public EntityCache(int maxSize) {
+        mCache = new LruCache<EntityKey, Object>(maxSize) {
+            @Override
+            protected int sizeOf(EntityKey key, Object value) {
+                return EntityCache.this.sizeOf(key.clazz, key.id, value);
+            }
+        };
+    }
+
+    /**
+     * Returns the size of the entity in user-defined units. Default is 1.
+     */
+    protected int sizeOf(Class<?> clazz, long id, Object entity) {
+        return 1;
+    }
+
+    public Object get(Class<?> clazz, long id) {
+        return mCache.get(new EntityKey(clazz, id));
+    }
+
+    public void put(Class<?> clazz, long id, Object entity) {
+        if (entity == null) return;
+        mCache.put(new EntityKey(clazz, id), entity);
+    }
+
+    /**
+     * Puts the entity if the cache has not been invalidated since generation was taken
+     * and no write is in progress.
+     * Protects the cache from stale entities read concurrently with writes.
+     */
+    void put(Class<?> clazz, long id, Object entity, long generation) {
+        if (entity == null) return;
+        synchronized (this) {
+            if (generation == mGeneration && mUpdates == 0) {
+                mCache.put(new EntityKey(clazz, id), entity);
+            }
+        }
+    }
+
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Called when write transaction starts. No entities are cached until {@link #endUpdate()}
+     */
+    synchronized void beginUpdate() {
+        mUpdates++;
+        mGeneration++;
+    }
+
+    /**
+     * Called when write transaction ends
+     */
+    synchronized void endUpdate() {
+        if (mUpdates > 0) {
+            mUpdates--;
+        }
+        mGeneration++;
+    }
+
+    public void evict(Class<?> clazz, long id) {
+        synchronized (this) {
+            mGeneration++;
+            mCache.remove(new EntityKey(clazz, id));
+        }
+    }
+
+    /**
+     * Evicts all entities of the class
+     */
+    public void evictClass(Class<?> clazz) {
+        synchronized (this) {
+            mGeneration++;
+            for (Map.Entry<EntityKey, Object> entry: mCache.snapshot().entrySet()) {
+                if (entry.getKey().clazz == clazz) {
+                    mCache.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    public void evictAll() {
+        synchronized (this) {
+            mGeneration++;
+            mCache.evictAll();
+        }
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    public int maxSize() {
+        return mCache.maxSize();
+    }
+
+    static final class EntityKey {
+        final Class<?> clazz;
+        final long id;
+
+        EntityKey(Class<?> clazz, long id) {
+            this.clazz = clazz;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EntityKey)) return false;
+            EntityKey other = (EntityKey) o;
+            return clazz == other.clazz && id == other.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * clazz.hashCode() + (int) (id ^ (id >>> 32));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.db.gora;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Names the child collections read with an entity.
+ * <p>Paths are {@link org.db.gora.schema.SqlChild} field names separated by dots, e.g. "items.attributes".
+ * Including a path includes its parents. Children that are not included are left unset.
+ * <p>Entities read with a partial plan are not put into {@link EntityCache}. The manager remembers
+ * the plan of every entity read partially: when such an entity is written back by the same manager,
+ * {@link SqliteManager#write(Object)} does not delete the stored children of the collections that were not read.
+ * See {@link SqliteManager#read(Class, long, FetchPlan)}
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+public class FetchPlan {
+    final boolean mAll;
+    final Map<String, FetchPlan> mChildren = new HashMap<>();
+    boolean mResolveLinks;
+
+    FetchPlan(boolean all) {
+        mAll = all;
+    }
+
+    /**
+     * Creates a plan that reads no children until paths are included
+     */
+    public FetchPlan() {
+        this(false);
+    }
+
+    /**
+     * Creates a plan that reads all children, same as null plan.
+     * Used to resolve links of entities read with all children.
+     */
+    public static FetchPlan all() {
+        return new FetchPlan(true);
+    }
+
+    /**
+     * Includes child path without its children
+     *
+     * @param path dot separated child field names
+     * @return this instance
+     */
+    public FetchPlan include(String path) {
+        return include(path, false);
+    }
+
+    /**
+     * Includes child path with all its descendants
+     *
+     * @param path dot separated child field names
+     * @return this instance
+     */
+    public FetchPlan includeAll(String path) {
+        return include(path, true);
+    }
+
+    /**
+     * Resolves {@link org.db.gora.schema.SqlLinkedEntity#fetchInto()} fields of the entities read.
+     * See {@link SqliteManager#resolveLinks(java.util.Collection)}
+     *
+     * @return this instance
+     */
+    public FetchPlan resolveLinks(boolean value) {
+        mResolveLinks = value;
+        return this;
+    }
+
+    public boolean isResolveLinks() {
+        return mResolveLinks;
+    }
+
+    private FetchPlan include(String path, boolean all) {
+        if (mAll) {
+            throw new IllegalStateException("FetchPlan: plan includes all children");
+        }
+        if (path == null || path.length() == 0) {
+            throw new IllegalArgumentException("FetchPlan: empty path");
+        }
+        FetchPlan plan = this;
+        String[] names = path.split("\\.");
+        for (int i = 0; i < names.length; ++i) {
+            FetchPlan child = plan.mChildren.get(names[i]);
+            if (child != null && child.mAll) break;
+
+            if (i == names.length - 1 && all) {
+                plan.mChildren.put(names[i], new FetchPlan(true));
+                break;
+            }
+            if (child == null) {
+                child = new FetchPlan(false);
+                plan.mChildren.put(names[i], child);
+            }
+            plan = child;
+        }
+        return this;
+    }
+
+    /**
+     * @return true if the plan reads all descendants
+     */
+    boolean isAll() {
+        return mAll;
+    }
+
+    /**
+     * @return plan of the child field or null if the child is not read
+     */
+    FetchPlan getChild(String fieldName) {
+        if (mAll) return this;
+        return mChildren.get(fieldName);
+    }
+}
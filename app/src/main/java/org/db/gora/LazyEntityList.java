@@ -0,0 +1,221 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.db.gora;
+
+import android.util.Log;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Read-only list of entities over an array of record IDs,
+ * e.g. returned by {@link DataManager#queryIds(Class, String, String[], String)} or
+ * {@link DataManager#queryKeywords(Class, String)}.
+ * <p>Entities are read on demand in windows of consecutive IDs with {@link DataManager#readAll(Class, long[])}.
+ * A limited number of windows is kept, least recently used windows are dropped.
+ * With a prefetch executor the next window in the direction of access is read in the background.
+ * <p>Element of a record deleted after the IDs were queried is null.
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+public class LazyEntityList<T> extends AbstractList<T> implements RandomAccess {
+    private static final String TAG = "GORA";
+
+    final DataManager mManager;
+    final Class<T> mClazz;
+    final ColumnAccessor mKeyAccessor;
+    final long[] mIds;
+    final int mWindowSize;
+    final Executor mPrefetchExecutor;
+
+    final LinkedHashMap<Integer, Object[]> mWindows;
+    final Map<Integer, FutureTask<Object[]>> mPending = new HashMap<>();
+    int mLastWindow = -1;
+
+    /**
+     * @param manager           data manager
+     * @param clazz             storage class registered with {@link SqlSchema}
+     * @param ids               record IDs
+     * @param windowSize        number of entities read at once
+     * @param maxWindows        maximum number of windows kept in memory
+     * @param prefetchExecutor  executor of background reads or null to disable prefetch
+     */
+    public LazyEntityList(DataManager manager, Class<T> clazz, long[] ids, int windowSize, final int maxWindows, Executor prefetchExecutor) {
+        mManager = manager;
+        mClazz = clazz;
+        TableData tableData = manager.getSchema().getTableData(clazz);
+        mKeyAccessor = tableData != null ? tableData.primaryKey.valueAccessor : null;
+        mIds = ids != null ? ids : new long[0];
+        mWindowSize = Math.max(1, windowSize);
+        mPrefetchExecutor = prefetchExecutor;
+        mWindows = new LinkedHashMap<Integer, Object[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[]> eldest) {
+                return size() > Math.max(1, maxWindows);
+            }
+        };
+    }
+
+    public LazyEntityList(DataManager manager, Class<T> clazz, long[] ids, int windowSize) {
+        this(manager, clazz, ids, windowSize, 4, null);
+    }
+
+    /**
+     * @return record IDs of the list
+     */
+    public long[] getIds() {
+        return mIds.clone();
+    }
+
+    public long getId(int location) {
+        return mIds[location];
+    }
+
+    @Override
+    public int size() {
+        return mIds.length;
+    }
+
+    /**
+     * Returns an entity, reads its window if the window is not loaded.
+     *
+     * @throws IllegalStateException if the entity cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public T get(int location) {
+        if (location < 0 || location >= mIds.length) {
+            throw new IndexOutOfBoundsException(String.format("LazyEntityList: Index %d, size %d", location, mIds.length));
+        }
+
+        int windowNo = location / mWindowSize;
+        Object[] window;
+        FutureTask<Object[]> pending;
+        int prefetchWindow;
+        synchronized (this) {
+            window = mWindows.get(windowNo);
+            pending = window == null ? mPending.get(windowNo) : null;
+            prefetchWindow = windowNo >= mLastWindow ? windowNo + 1 : windowNo - 1;
+            mLastWindow = windowNo;
+        }
+
+        if (window == null) {
+            try {
+                if (pending != null) {
+                    window = pending.get();
+                } else {
+                    window = readWindow(windowNo);
+                    synchronized (this) {
+                        mWindows.put(windowNo, window);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("LazyEntityList: Interrupted", e);
+            } catch (ExecutionException e) {
+                Log.e(TAG, "LazyEntityList: get", e.getCause());
+                throw new IllegalStateException("LazyEntityList: Read failed", e.getCause());
+            } catch (DataAccessException e) {
+                Log.e(TAG, "LazyEntityList: get", e);
+                throw new IllegalStateException("LazyEntityList: Read failed", e);
+            }
+        }
+
+        prefetch(prefetchWindow);
+        return (T) window[location % mWindowSize];
+    }
+
+    /**
+     * Drops loaded windows. Entities are read again on access.
+     */
+    public synchronized void evictAll() {
+        mWindows.clear();
+    }
+
+    private void prefetch(final int windowNo) {
+        if (mPrefetchExecutor == null) return;
+        if (windowNo < 0 || windowNo * (long) mWindowSize >= mIds.length) return;
+
+        FutureTask<Object[]> task;
+        synchronized (this) {
+            if (mWindows.containsKey(windowNo) || mPending.containsKey(windowNo)) return;
+
+            task = new FutureTask<Object[]>(new Callable<Object[]>() {
+                @Override
+                public Object[] call() throws Exception {
+                    Object[] window = null;
+                    try {
+                        window = readWindow(windowNo);
+                        return window;
+                    } finally {
+                        synchronized (LazyEntityList.this) {
+                            mPending.remove(windowNo);
+                            if (window != null) {
+                                mWindows.put(windowNo, window);
+                            }
+                        }
+                    }
+                }
+            });
+            mPending.put(windowNo, task);
+        }
+        try {
+            mPrefetchExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                mPending.remove(windowNo);
+            }
+        }
+    }
+
+    Object[] readWindow(int windowNo) throws DataAccessException {
+        int from = windowNo * mWindowSize;
+        int to = Math.min(from + mWindowSize, mIds.length);
+        long[] ids = Arrays.copyOfRange(mIds, from, to);
+
+        Object[] window = new Object[ids.length];
+        List<T> entities = mManager.readAll(mClazz, ids);
+        if (entities.size() == ids.length) {
+            entities.toArray(window);
+        } else {
+            // some records are deleted: entities are in order of IDs, missing positions stay null
+            try {
+                int pos = 0;
+                for (int i = 0; i < ids.length && pos < entities.size(); ++i) {
+                    T entity = entities.get(pos);
+                    if (SqliteManager.getLongValue(mKeyAccessor, entity) == ids[i]) {
+                        window[i] = entity;
+                        pos++;
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("LazyEntityList: Read: Internal exception", e);
+            }
+        }
+        return window;
+    }
+}
@@ -27,13 +27,21 @@ import java.util.Comparator;
 final class LongValueComparator implements Comparator<Object> {
 	public LongValueComparator(ColumnAccessor getter) {
 		this.getter = getter;
+		this.longGetter = getter instanceof LongColumnAccessor ? (LongColumnAccessor) getter : null;
 	}
 	@Override
 	public int compare(Object lhs, Object rhs) {
 		int result = 0;
 		try {
-			long id1 = (Long) getter.getValue(lhs);
-			long id2 = (Long) getter.getValue(rhs);
+			long id1;
+			long id2;
+			if (longGetter != null) {
+				id1 = longGetter.getLong(lhs);
+				id2 = longGetter.getLong(rhs);
+			} else {
+				id1 = (Long) getter.getValue(lhs);
+				id2 = (Long) getter.getValue(rhs);
+			}
 			if (id1 < id2) {
 				result = -1;
 			} 
@@ -46,5 +54,5 @@ final class LongValueComparator implements Comparator<Object> {
 		return result;
 	}
 	private final ColumnAccessor getter;
+	private final LongColumnAccessor longGetter;
 } 
-
@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Entities read by {@link SqliteManager} with a partial {@link FetchPlan}.
+ * Keyed by entity identity, entities are weakly referenced.
+ * <p>Each entity keeps the plan node it has been read with, so
+ * {@link SqliteManager#write(Object)} keeps the stored children that were not read.
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+class PartialEntities {
+    final Map<EntityRef, FetchPlan> mEntities = new HashMap<>();
+    final ReferenceQueue<Object> mReleased = new ReferenceQueue<>();
+    volatile int mSize;
+
+    void put(Object entity, FetchPlan plan) {
+        if (entity == null || plan == null || plan.isAll()) return;
+        synchronized (this) {
+            expunge();
+            mEntities.put(new EntityRef(entity, mReleased), plan);
+            mSize = mEntities.size();
+        }
+    }
+
+    /**
+     * @return plan the entity children have been read with, or null if all children have been read
+     */
+    FetchPlan get(Object entity) {
+        if (entity == null || mSize == 0) return null;
+        synchronized (this) {
+            expunge();
+            mSize = mEntities.size();
+            return mEntities.get(new EntityRef(entity, null));
+        }
+    }
+
+    private void expunge() {
+        Object ref;
+        while ((ref = mReleased.poll()) != null) {
+            mEntities.remove(ref);
+        }
+    }
+
+    /**
+     * Weak reference compared by entity identity
+     */
+    static final class EntityRef extends WeakReference<Object> {
+        final int hash;
+
+        EntityRef(Object entity, ReferenceQueue<Object> queue) {
+            super(entity, queue);
+            hash = System.identityHashCode(entity);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EntityRef)) return false;
+            Object entity = get();
+            return entity != null && entity == ((EntityRef) o).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -18,6 +18,7 @@ import android.database.DatabaseUtils;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
   * Creates SQL Where and OrderBy clauses
@@ -28,9 +29,18 @@ import java.util.Date;
 
 public class PredicateBuilder {
     final TableData mTable;
+    final SqlSchema mSchema;
 
     PredicateBuilder(TableData table) {
+        this(table, null);
+    }
+
+    /**
+     * @param schema schema used to resolve entity links, see {@link WhereClause#linked(WhereClause)}
+     */
+    PredicateBuilder(TableData table, SqlSchema schema) {
         mTable = table;
+        mSchema = schema;
     }
 
     /**
@@ -38,6 +48,8 @@ public class PredicateBuilder {
      */
     public final class OrderByClause {
         final StringBuilder mOrderBy;
+        final ArrayList<FieldData> mFields = new ArrayList<>();
+        final ArrayList<Boolean> mAscending = new ArrayList<>();
 
         OrderByClause() {
             mOrderBy = new StringBuilder();
@@ -45,12 +57,18 @@ public class PredicateBuilder {
 
         public void clear() {
             mOrderBy.setLength(0);
+            mFields.clear();
+            mAscending.clear();
         }
 
         public String getOrderByClause() {
             return mOrderBy.toString();
         }
 
+        TableData getTable() {
+            return mTable;
+        }
+
         public OrderByClause orderBy(String name, boolean asc) throws DataIntegrityException {
             FieldData fd = mTable.getFieldByName(name);
             if (fd == null) {
@@ -59,6 +77,8 @@ public class PredicateBuilder {
             clear();
 
             mOrderBy.append(String.format("%s %s", fd.columnName, asc ? "ASC" : "DESC"));
+            mFields.add(fd);
+            mAscending.add(asc);
 
             return this;
         }
@@ -72,6 +92,8 @@ public class PredicateBuilder {
                 mOrderBy.append(", ");
             }
             mOrderBy.append(String.format("%s %s", fd.columnName, asc ? "ASC" : "DESC"));
+            mFields.add(fd);
+            mAscending.add(asc);
             return this;
         }
 
@@ -81,6 +103,91 @@ public class PredicateBuilder {
         public OrderByClause thenBy(String name) throws DataIntegrityException {
             return thenBy(name, true);
         }
+
+        /**
+         * Returns sort key columns: ordered columns followed by the primary key, unless it is ordered already.
+         * The primary key makes the key unique, so keyset pages neither skip nor repeat rows.
+         */
+        FieldData[] getKeyFields() {
+            ArrayList<FieldData> fields = new ArrayList<>(mFields);
+            if (!fields.contains(mTable.primaryKey)) {
+                fields.add(mTable.primaryKey);
+            }
+            return fields.toArray(new FieldData[fields.size()]);
+        }
+
+        boolean isKeyAscending(int keyNo) {
+            return keyNo >= mAscending.size() || mAscending.get(keyNo);
+        }
+
+        /**
+         * @return OrderBy clause on sort key columns
+         */
+        String getKeyOrderByClause() {
+            StringBuilder builder = new StringBuilder();
+            FieldData[] fields = getKeyFields();
+            for (int i = 0; i < fields.length; ++i) {
+                if (i > 0) {
+                    builder.append(", ");
+                }
+                builder.append(fields[i].columnName);
+                builder.append(isKeyAscending(i) ? " ASC" : " DESC");
+            }
+            return builder.toString();
+        }
+
+        /**
+         * Compiles the condition selecting rows that follow the sort key in this order.
+         * Row value comparison (k1, k2) &gt; (?, ?) is expanded into
+         * (k1 &gt; ?) OR (k1 = ? AND k2 &gt; ?) since it is not supported by older SQLite and
+         * cannot mix sort directions. NULLs precede other values as in SQLite sort order.
+         *
+         * @param afterKey sort key values of the last row of the previous page, see {@link Page#getLastKey()}
+         * @return compiled predicate
+         */
+        Predicate seek(Object[] afterKey) {
+            FieldData[] fields = getKeyFields();
+            ArrayList<Object> args = new ArrayList<>();
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < fields.length; ++i) {
+                Object value = toSqlValue(afterKey[i]);
+                boolean asc = isKeyAscending(i);
+                if (value == null && !asc) {
+                    continue;
+                }
+
+                int position = builder.length();
+                if (position > 0) {
+                    builder.append(" OR ");
+                }
+                builder.append('(');
+                for (int j = 0; j < i; ++j) {
+                    Object prior = toSqlValue(afterKey[j]);
+                    builder.append(fields[j].columnName);
+                    if (prior == null) {
+                        builder.append(" IS NULL AND ");
+                    } else {
+                        builder.append(" = ? AND ");
+                        args.add(prior);
+                    }
+                }
+                String column = fields[i].columnName;
+                if (value == null) {
+                    builder.append(column).append(" IS NOT NULL");
+                } else if (asc) {
+                    builder.append(column).append(" > ?");
+                    args.add(value);
+                } else {
+                    builder.append('(').append(column).append(" < ? OR ").append(column).append(" IS NULL)");
+                    args.add(value);
+                }
+                builder.append(')');
+            }
+            if (builder.length() == 0) {
+                builder.append('0');
+            }
+            return new Predicate(mTable, builder.toString(), args.toArray());
+        }
     }
     /**
      * Returns an instance of {@link OrderByClause}
@@ -91,6 +198,132 @@ public class PredicateBuilder {
         return new OrderByClause();
     }
 
+    /**
+     * Aggregate functions of {@link AggregateClause}
+     */
+    public enum AggregateFunction {COUNT, SUM, MIN, MAX, AVG}
+
+    /**
+     * Class that holds aggregate SELECT structure: aggregate functions of columns and GROUP BY columns.
+     * Result columns are GROUP BY columns followed by aggregates in order they are added.
+     * See {@link SqliteManager#queryAggregate(Class, AggregateClause, Predicate)}
+     */
+    public final class AggregateClause {
+        final ArrayList<String> mAggregates = new ArrayList<>();
+        final ArrayList<String> mGroupBy = new ArrayList<>();
+
+        AggregateClause() {
+        }
+
+        public void clear() {
+            mAggregates.clear();
+            mGroupBy.clear();
+        }
+
+        /**
+         * Adds COUNT(*)
+         */
+        public AggregateClause count() {
+            mAggregates.add("COUNT(*)");
+            return this;
+        }
+
+        public AggregateClause count(String name) throws DataIntegrityException {
+            return add(AggregateFunction.COUNT, name);
+        }
+
+        public AggregateClause sum(String name) throws DataIntegrityException {
+            return add(AggregateFunction.SUM, name);
+        }
+
+        public AggregateClause min(String name) throws DataIntegrityException {
+            return add(AggregateFunction.MIN, name);
+        }
+
+        public AggregateClause max(String name) throws DataIntegrityException {
+            return add(AggregateFunction.MAX, name);
+        }
+
+        public AggregateClause avg(String name) throws DataIntegrityException {
+            return add(AggregateFunction.AVG, name);
+        }
+
+        /**
+         * Adds aggregate function of a column
+         *
+         * @param name field or column name
+         */
+        public AggregateClause add(AggregateFunction function, String name) throws DataIntegrityException {
+            FieldData fd = mTable.getFieldByName(name);
+            if (fd == null) {
+                throw new DataIntegrityException(String.format("Table %s does not have column %s", mTable.tableName, name));
+            }
+            mAggregates.add(String.format("%s(%s)", function.name(), fd.columnName));
+            return this;
+        }
+
+        /**
+         * Adds GROUP BY column
+         *
+         * @param name field or column name
+         */
+        public AggregateClause groupBy(String name) throws DataIntegrityException {
+            FieldData fd = mTable.getFieldByName(name);
+            if (fd == null) {
+                throw new DataIntegrityException(String.format("Table %s does not have column %s", mTable.tableName, name));
+            }
+            mGroupBy.add(fd.columnName);
+            return this;
+        }
+
+        TableData getTable() {
+            return mTable;
+        }
+
+        /**
+         * @return SELECT clause with GROUP BY columns followed by aggregates
+         */
+        String getSelectClause() {
+            StringBuilder builder = new StringBuilder();
+            for (String column: mGroupBy) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(column);
+            }
+            for (String aggregate: mAggregates) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(aggregate);
+            }
+            return builder.toString();
+        }
+
+        /**
+         * @return GROUP BY clause or empty string
+         */
+        String getGroupByClause() {
+            StringBuilder builder = new StringBuilder();
+            for (String column: mGroupBy) {
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(column);
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * Returns an instance of {@link AggregateClause}
+     *
+     * @return instance of {@link AggregateClause}
+     */
+    public AggregateClause aggregate() {
+        return new AggregateClause();
+    }
+
     /**
      * Returns an instance of {@link WhereClause}
      *
@@ -189,6 +422,87 @@ public class PredicateBuilder {
             return addCriteria(new WhereCriteria(this, field, CriteriaOperation.SET, values));
         }
 
+        /**
+         * Creates linked entity criteria: the link column refers to a master row that matches master Where clause.
+         * The master clause is built by the {@link PredicateBuilder} of the linked entity class.
+         *
+         * @param field link column or field name, see {@link org.db.gora.schema.SqlLinkedEntity}
+         * @param masterWhere where clause of the linked entity
+         * @return parsed criteria
+         * @throws DataIntegrityException if the column does not link to the entity
+         */
+        public WhereCriteria linked(String field, WhereClause masterWhere) throws DataIntegrityException {
+            if (masterWhere == null) {
+                throw new DataIntegrityException("Linked criteria: master where clause is null");
+            }
+            FieldData fd = mTable.getFieldByName(field);
+            if (fd == null) {
+                throw new DataIntegrityException(String.format("Table %s does not have column %s", mTable.tableName, field));
+            }
+            TableLinkData link = null;
+            for (TableLinkData l: getLinks(masterWhere.getTable())) {
+                if (l.detailField.columnName.equals(fd.columnName)) {
+                    link = l;
+                    break;
+                }
+            }
+            if (link == null) {
+                throw new DataIntegrityException(String.format("Linked criteria: column %s.%s does not link to %s",
+                        mTable.tableName, fd.columnName, masterWhere.getTable().tableName));
+            }
+            return addCriteria(new WhereCriteria(this, fd.columnName, CriteriaOperation.LINKED, new Object[]{masterWhere}));
+        }
+
+        /**
+         * Creates linked entity criteria on the only column that links to the entity of master Where clause.
+         * See {@link #linked(String, WhereClause)}
+         *
+         * @throws DataIntegrityException if there is no or more than one link column
+         */
+        public WhereCriteria linked(WhereClause masterWhere) throws DataIntegrityException {
+            if (masterWhere == null) {
+                throw new DataIntegrityException("Linked criteria: master where clause is null");
+            }
+            List<TableLinkData> links = getLinks(masterWhere.getTable());
+            if (links.size() != 1) {
+                throw new DataIntegrityException(String.format("Linked criteria: table %s has %d links to %s",
+                        mTable.tableName, links.size(), masterWhere.getTable().tableName));
+            }
+            return addCriteria(new WhereCriteria(this, links.get(0).detailField.columnName, CriteriaOperation.LINKED, new Object[]{masterWhere}));
+        }
+
+        private List<TableLinkData> getLinks(TableData masterTable) throws DataIntegrityException {
+            if (mSchema == null) {
+                throw new DataIntegrityException("Linked criteria: predicate builder has no schema");
+            }
+            List<TableLinkData> result = new ArrayList<>();
+            List<TableLinkData> links = mSchema.getDetailLinks(masterTable.tableClass);
+            if (links != null) {
+                for (TableLinkData link: links) {
+                    if (link.detailClass == mTable.tableClass) {
+                        result.add(link);
+                    }
+                }
+            }
+            return result;
+        }
+
+        TableData getTable() {
+            return mTable;
+        }
+
+        /**
+         * @return true if the clause has linked entity criteria
+         */
+        boolean isLinked() {
+            for (WhereCriteria criteria: mOrList) {
+                for (; criteria != null; criteria = criteria.nextCriteria) {
+                    if (criteria.getOperation() == CriteriaOperation.LINKED) return true;
+                }
+            }
+            return false;
+        }
+
         private WhereCriteria addCriteria(WhereCriteria criteria) {
             if (mLastCriteria != null) {
                 mLastCriteria.nextCriteria = criteria;
@@ -200,13 +514,38 @@ public class PredicateBuilder {
         }
 
         /**
-         * Builds Where clause string
+         * Builds Where clause string with values inlined as SQL literals
          *
          * @return WHERE clause
          */
         public String getWhereClause() {
+            return buildWhereClause(null);
+        }
+
+        /**
+         * Compiles Where clause into SQL with ? placeholders and an array of arguments.
+         * Clauses that differ only in criteria values produce the same SQL,
+         * so SQLite can reuse the prepared statement.
+         *
+         * @return compiled predicate
+         */
+        public Predicate compile() {
+            ArrayList<Object> args = new ArrayList<>();
+            String where = buildWhereClause(args);
+            return new Predicate(mTable, where, args.toArray(), isLinked());
+        }
+
+        private void appendValue(StringBuilder builder, Object value, ArrayList<Object> args) {
+            if (args != null) {
+                builder.append('?');
+                args.add(toSqlValue(value));
+            } else {
+                builder.append(toSqlString(value));
+            }
+        }
+
+        private String buildWhereClause(ArrayList<Object> args) {
             StringBuilder builder = new StringBuilder();
-            builder.setLength(0);
             for (int i = 0; i < mOrList.size(); ++i) {
                 int currentPosition = builder.length();
 
@@ -218,29 +557,29 @@ public class PredicateBuilder {
                         case EQUAL:
                             builder.append(criteria.mFieldName);
                             if (criteria.mValues[0] == null) {
-                                builder.append(criteria.mExclude ? " IS NOT NULL " : " IS NULL ");
+                                builder.append(criteria.mExclude ? " IS NOT NULL" : " IS NULL");
                             } else {
                                 builder.append(criteria.mExclude ? " <> " : " = ");
+                                appendValue(builder, criteria.mValues[0], args);
                             }
-                            builder.append(toSqlString(criteria.mValues[0]));
                             break;
 
                         case LIKE:
                             builder.append(criteria.mFieldName);
                             builder.append(criteria.mExclude ? " NOT LIKE " : " LIKE ");
-                            builder.append(toSqlString(criteria.mValues[0]));
+                            appendValue(builder, criteria.mValues[0], args);
                             break;
 
                         case LESS:
                             builder.append(criteria.mFieldName);
                             builder.append(criteria.mExclude ? " >= " : " < ");
-                            builder.append(toSqlString(criteria.mValues[0]));
+                            appendValue(builder, criteria.mValues[0], args);
                             break;
 
                         case GREATER:
                             builder.append(criteria.mFieldName);
                             builder.append(criteria.mExclude ? " <= " : " > ");
-                            builder.append(toSqlString(criteria.mValues[0]));
+                            appendValue(builder, criteria.mValues[0], args);
                             break;
 
                         case RANGE:
@@ -249,9 +588,9 @@ public class PredicateBuilder {
                                 builder.append(" NOT");
                             }
                             builder.append(" BETWEEN ");
-                            builder.append(toSqlString(criteria.mValues[0]));
+                            appendValue(builder, criteria.mValues[0], args);
                             builder.append(" AND ");
-                            builder.append(toSqlString(criteria.mValues[1]));
+                            appendValue(builder, criteria.mValues[1], args);
 
                             break;
 
@@ -265,11 +604,33 @@ public class PredicateBuilder {
                                 if (j > 0) {
                                     builder.append(", ");
                                 }
-                                builder.append(toSqlString(criteria.mValues[j]));
+                                if (criteria.mValues.length > MAX_SET_PARAMETERS) {
+                                    builder.append(toSqlString(criteria.mValues[j]));
+                                } else {
+                                    appendValue(builder, criteria.mValues[j], args);
+                                }
                             }
                             builder.append(")");
                             break;
 
+                        case LINKED: {
+                            WhereClause masterWhere = (WhereClause) criteria.mValues[0];
+                            TableData masterTable = masterWhere.getTable();
+                            String masterClause = masterWhere.buildWhereClause(args);
+                            builder.append(criteria.mFieldName);
+                            if (criteria.mExclude) {
+                                builder.append(" NOT");
+                            }
+                            builder.append(" IN (SELECT ");
+                            builder.append(masterTable.primaryKey.columnName);
+                            builder.append(" FROM ");
+                            builder.append(masterTable.tableName);
+                            builder.append(" WHERE ");
+                            builder.append(masterClause.length() > 0 ? masterClause : "1");
+                            builder.append(")");
+                        }
+                        break;
+
                         default:
                             break;
                     }
@@ -415,22 +776,175 @@ public class PredicateBuilder {
         private WhereClause mOwner;
     }
 
-    protected enum CriteriaOperation {NOP, EQUAL, LIKE, LESS, GREATER, RANGE, SET}
+    /**
+     * Where clause compiled into SQL with ? placeholders and its arguments.
+     * See {@link WhereClause#compile()}
+     */
+    public static final class Predicate {
+        final TableData mTable;
+        final String mWhere;
+        final Object[] mValues;
+        final boolean mLinked;
+
+        Predicate(TableData table, String where, Object[] values) {
+            this(table, where, values, false);
+        }
+
+        Predicate(TableData table, String where, Object[] values, boolean linked) {
+            mTable = table;
+            mWhere = where;
+            mValues = values;
+            mLinked = linked;
+        }
+
+        /**
+         * @return true if the clause selects by linked entity tables.
+         * Results of such predicates are not kept in {@link QueryCache}, it is invalidated per table.
+         */
+        public boolean isLinked() {
+            return mLinked;
+        }
+
+        /**
+         * @return WHERE clause with ? placeholders
+         */
+        public String getWhereClause() {
+            return mWhere;
+        }
+
+        /**
+         * @return argument values in placeholder order: Long, Double or String
+         */
+        public Object[] getValues() {
+            return mValues.clone();
+        }
+
+        /**
+         * @return arguments as strings for {@link android.database.sqlite.SQLiteDatabase#rawQuery(String, String[])}
+         */
+        public String[] getWhereArgs() {
+            String[] args = new String[mValues.length];
+            for (int i = 0; i < mValues.length; ++i) {
+                args[i] = mValues[i] != null ? mValues[i].toString() : null;
+            }
+            return args;
+        }
+    }
+
+    /**
+     * Page of IDs read by keyset pagination.
+     * See {@link SqliteManager#queryPage(Class, Predicate, OrderByClause, Object[], int)}
+     */
+    public static final class Page {
+        final long[] mIds;
+        final Object[] mLastKey;
+        final boolean mHasMore;
+
+        Page(long[] ids, Object[] lastKey, boolean hasMore) {
+            mIds = ids;
+            mLastKey = lastKey;
+            mHasMore = hasMore;
+        }
+
+        /**
+         * @return record IDs in sort order
+         */
+        public long[] getIds() {
+            return mIds;
+        }
+
+        /**
+         * @return sort key values of the last row to request the next page, null if the page is empty
+         */
+        public Object[] getLastKey() {
+            return mLastKey != null ? mLastKey.clone() : null;
+        }
+
+        /**
+         * @return true if there are rows after this page
+         */
+        public boolean hasMore() {
+            return mHasMore;
+        }
+    }
+
+    /**
+     * Rows of an aggregate query. Values are Long, Double, String or null.
+     * Columns are GROUP BY columns followed by aggregates.
+     * See {@link SqliteManager#queryAggregate(Class, AggregateClause, Predicate)}
+     */
+    public static final class AggregateResult {
+        final Object[][] mRows;
+
+        AggregateResult(Object[][] rows) {
+            mRows = rows;
+        }
+
+        public int getRowCount() {
+            return mRows.length;
+        }
+
+        public Object getValue(int row, int column) {
+            return mRows[row][column];
+        }
+
+        public boolean isNull(int row, int column) {
+            return mRows[row][column] == null;
+        }
+
+        /**
+         * @return numeric value, 0 if null
+         */
+        public long getLong(int row, int column) {
+            Object value = mRows[row][column];
+            if (value instanceof Number) return ((Number) value).longValue();
+            return value != null ? Long.parseLong(value.toString()) : 0L;
+        }
+
+        /**
+         * @return numeric value, 0 if null
+         */
+        public double getDouble(int row, int column) {
+            Object value = mRows[row][column];
+            if (value instanceof Number) return ((Number) value).doubleValue();
+            return value != null ? Double.parseDouble(value.toString()) : 0.0;
+        }
+
+        public String getString(int row, int column) {
+            Object value = mRows[row][column];
+            return value != null ? value.toString() : null;
+        }
+    }
+
+    protected enum CriteriaOperation {NOP, EQUAL, LIKE, LESS, GREATER, RANGE, SET, LINKED}
+
+    /**
+     * SET criteria with more values are inlined as literals to stay below SQLite variable limit
+     */
+    static final int MAX_SET_PARAMETERS = 64;
 
     static String toSqlString(Object value) {
         if (value == null) return "NULL";
-        Class<?> type = value.getClass();
-
-        if (type == Long.TYPE) return Long.toString((Long) value);
-        if (type == Integer.TYPE) return Integer.toString((Integer) value);
-        if (type == Short.TYPE) return Short.toString((Short) value);
-        if (type == Byte.TYPE) return Byte.toString((Byte) value);
-        if (type == Boolean.TYPE) return (Boolean) value ? "1" : "0";
-        if (type == Double.TYPE) return Double.toString((Double) value);
-        if (type == Float.TYPE) return Float.toString((Float) value);
-        if (type == String.class) return DatabaseUtils.sqlEscapeString((String) value);
-        if (type == Date.class) return Long.toString(((Date) value).getTime());
-        if (type.isEnum()) return DatabaseUtils.sqlEscapeString(((Enum) value).name());
+        Object sqlValue = toSqlValue(value);
+        if (sqlValue instanceof String) return DatabaseUtils.sqlEscapeString((String) sqlValue);
+
+        return sqlValue.toString();
+    }
+
+    /**
+     * Converts a criteria value to the type it is stored in SQLite
+     */
+    static Object toSqlValue(Object value) {
+        if (value == null) return null;
+
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof Double || value instanceof Float) return ((Number) value).doubleValue();
+        if (value instanceof Boolean) return (Boolean) value ? 1L : 0L;
+        if (value instanceof String) return value;
+        if (value instanceof Date) return ((Date) value).getTime();
+        if (value instanceof Enum) return ((Enum) value).name();
 
         return value.toString();
     }
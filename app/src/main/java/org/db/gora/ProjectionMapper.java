@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.db.gora;
+
+import android.database.Cursor;
+
+import org.db.gora.accessors.BooleanFieldAccessor;
+import org.db.gora.accessors.DoubleFieldAccessor;
+import org.db.gora.accessors.GenericFieldAccessor;
+import org.db.gora.accessors.IntFieldAccessor;
+import org.db.gora.accessors.LongFieldAccessor;
+import org.db.gora.accessors.StringFieldAccessor;
+import org.db.gora.schema.SchemaBuilder;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+
+/**
+ * Compiled cursor-to-object mapper for a subset of table columns.
+ * <p>The target is either the storage class with a subset of its fields,
+ * or a projection class whose fields are named after storage class fields or table columns.
+ * See {@link SqliteManager#queryProjection(Class, Class, String, String[], String)}
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+final class ProjectionMapper {
+    final TableData tableData;
+    final Constructor<?> constructor;
+    final String selectClause;
+    final RowMapper.ColumnMapper[] columns;
+
+    private ProjectionMapper(TableData tableData, Class<?> targetClass, FieldData[] fields) throws DataIntegrityException {
+        this.tableData = tableData;
+        try {
+            constructor = targetClass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new DataIntegrityException(String.format("Projection: class %s does not have a default constructor", targetClass.getName()));
+        }
+
+        StringBuilder builder = new StringBuilder("SELECT ");
+        columns = new RowMapper.ColumnMapper[fields.length];
+        for (int i = 0; i < fields.length; ++i) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(fields[i].columnName);
+            columns[i] = RowMapper.createColumnMapper(fields[i]);
+        }
+        builder.append(" FROM ");
+        builder.append(tableData.tableName);
+        selectClause = builder.toString();
+    }
+
+    /**
+     * Creates a new object from the current cursor row
+     */
+    Object read(Cursor from) throws Exception {
+        Object target = constructor.newInstance();
+        final RowMapper.ColumnMapper[] columns = this.columns;
+        for (int i = 0; i < columns.length; ++i) {
+            columns[i].read(from, i, target);
+        }
+        return target;
+    }
+
+    /**
+     * Maps the fields of the storage class
+     *
+     * @param fieldNames storage class field or column names
+     */
+    static ProjectionMapper forFields(TableData tableData, String[] fieldNames) throws DataIntegrityException {
+        if (fieldNames == null || fieldNames.length == 0) {
+            throw new DataIntegrityException(String.format("Projection: no fields of table %s", tableData.tableName));
+        }
+        FieldData[] fields = new FieldData[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; ++i) {
+            FieldData fd = tableData.getFieldByName(fieldNames[i]);
+            if (fd == null) {
+                throw new DataIntegrityException(String.format("Column %s has not been found in Table %s", fieldNames[i], tableData.tableName));
+            }
+            fields[i] = fd;
+        }
+        return new ProjectionMapper(tableData, tableData.tableClass, fields);
+    }
+
+    /**
+     * Maps the instance fields of the projection class and its superclasses.
+     * Every field should be named after a storage class field or a table column and have the same data type.
+     */
+    static ProjectionMapper forClass(TableData tableData, Class<?> projectionClass) throws DataIntegrityException {
+        ArrayList<FieldData> fields = new ArrayList<>();
+        for (Class<?> clazz = projectionClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field: clazz.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) continue;
+
+                FieldData column = tableData.getFieldByName(field.getName());
+                if (column == null) {
+                    throw new DataIntegrityException(String.format("Projection: field %s.%s has no column in Table %s",
+                            projectionClass.getName(), field.getName(), tableData.tableName));
+                }
+                FieldDataType dataType = SchemaBuilder.resolveSimpleDataType(field.getType());
+                if (dataType != column.dataType) {
+                    throw new DataIntegrityException(String.format("Projection: field %s.%s type does not match column %s",
+                            projectionClass.getName(), field.getName(), column.columnName));
+                }
+
+                field.setAccessible(true);
+                FieldData fd = new FieldData();
+                fd.columnName = column.columnName;
+                fd.fieldName = field.getName();
+                fd.dataType = dataType;
+                fd.nullable = column.nullable;
+                switch (dataType) {
+                    case INT:
+                        fd.valueAccessor = new IntFieldAccessor(field);
+                        break;
+                    case DOUBLE:
+                        fd.valueAccessor = new DoubleFieldAccessor(field);
+                        break;
+                    case LONG:
+                        fd.valueAccessor = new LongFieldAccessor(field);
+                        break;
+                    case BOOLEAN:
+                        fd.valueAccessor = new BooleanFieldAccessor(field);
+                        break;
+                    case STRING:
+                        fd.valueAccessor = new StringFieldAccessor(field);
+                        break;
+                    default:
+                        fd.valueAccessor = new GenericFieldAccessor(field);
+                        break;
+                }
+                fields.add(fd);
+            }
+        }
+        if (fields.isEmpty()) {
+            throw new DataIntegrityException(String.format("Projection: class %s has no fields", projectionClass.getName()));
+        }
+        return new ProjectionMapper(tableData, projectionClass, fields.toArray(new FieldData[fields.size()]));
+    }
+}
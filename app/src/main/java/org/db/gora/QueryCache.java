@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora;
+
+import android.util.LruCache;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of ID arrays returned by {@link SqliteManager#queryIds(Class, String, String[], String)}
+ * and {@link SqliteManager#queryKeywords(Class, String)}.
+ * Keyed by the query SQL and arguments.
+ * <p>Every table has a version counter that is incremented by {@link SqliteManager} writes and deletes
+ * touching the table or its keyword table. A cached result is valid while the version of its table is unchanged.
+ *
+ * See {@link SqliteManager#setQueryCache(QueryCache)}
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+public class QueryCache {
+    final LruCache<String, QueryResult> mCache;
+    final Map<String, Long> mTableVersions = new HashMap<>();
+    long mGeneration;
+    int mUpdates;
+
+    /**
+     * @param maxEntries maximum number of cached results
+     */
+    public QueryCache(int maxEntries) {
+        mCache = new LruCache<>(maxEntries);
+    }
+
+    /**
+     * Returns a copy of the cached result or null
+     */
+    long[] get(String tableName, String key) {
+        QueryResult result = mCache.get(key);
+        if (result != null) {
+            if (result.version == getTableVersion(tableName)) {
+                return result.ids.clone();
+            }
+            mCache.remove(key);
+        }
+        return null;
+    }
+
+    /**
+     * Caches the result if no write has started since generation was taken
+     */
+    void put(String tableName, String key, long[] ids, long version, long generation) {
+        if (ids == null) return;
+        synchronized (this) {
+            if (generation == mGeneration && mUpdates == 0 && version == getTableVersion(tableName)) {
+                mCache.put(key, new QueryResult(ids.clone(), version));
+            }
+        }
+    }
+
+    synchronized long getTableVersion(String tableName) {
+        Long version = mTableVersions.get(tableName);
+        return version != null ? version : 0L;
+    }
+
+    /**
+     * Invalidates cached results of the table
+     */
+    public synchronized void invalidateTable(String tableName) {
+        mTableVersions.put(tableName, getTableVersion(tableName) + 1);
+    }
+
+    public synchronized void evictAll() {
+        mGeneration++;
+        mCache.evictAll();
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Called when write transaction starts. No results are cached until {@link #endUpdate()}
+     */
+    synchronized void beginUpdate() {
+        mUpdates++;
+        mGeneration++;
+    }
+
+    /**
+     * Called when write transaction ends
+     */
+    synchronized void endUpdate() {
+        if (mUpdates > 0) {
+            mUpdates--;
+        }
+        mGeneration++;
+    }
+
+    static final class QueryResult {
+        final long[] ids;
+        final long version;
+
+        QueryResult(long[] ids, long version) {
+            this.ids = ids;
+            this.version = version;
+        }
+    }
+
+    static String getKey(String prefix, String sql, String[] args) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(prefix).append('\n').append(sql);
+        if (args != null) {
+            for (String arg: args) {
+                builder.append('\n');
+                if (arg != null) {
+                    builder.append(arg.length()).append(':').append(arg);
+                } else {
+                    builder.append("NULL");
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Compiled cursor-to-entity mapper and entity-to-statement binder for a table.
+ * <p>Column operations are resolved once per {@link TableData}: data type, nullability,
+ * Date conversion and unboxed accessor support.
+ * See {@link TableQueryBuilder#getRowMapper()}
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+final class RowMapper {
+    final TableData tableData;
+
+    /** Column operations in SELECT clause order: {@link TableData#fields} */
+    final ColumnMapper[] columns;
+    /** Column operations in INSERT/UPDATE parameter order: {@link TableData#fields} except primary key */
+    final ColumnMapper[] params;
+    /** Fields in INSERT/UPDATE parameter order */
+    final FieldData[] paramFields;
+
+    RowMapper(TableData tableData) {
+        this.tableData = tableData;
+
+        FieldData[] fields = tableData.fields;
+        columns = new ColumnMapper[fields.length];
+        params = new ColumnMapper[tableData.primaryKey != null ? fields.length - 1 : fields.length];
+        paramFields = new FieldData[params.length];
+        int paramNo = 0;
+        for (int i = 0; i < fields.length; ++i) {
+            columns[i] = createColumnMapper(fields[i]);
+            if (fields[i] != tableData.primaryKey) {
+                params[paramNo] = columns[i];
+                paramFields[paramNo] = fields[i];
+                paramNo++;
+            }
+        }
+    }
+
+    /**
+     * Populates the entity from the current cursor row.
+     * The cursor is expected to be positioned on a row selected with {@link TableQueryBuilder#getSelectClause()}
+     */
+    void read(Cursor from, Object storage) throws Exception {
+        final ColumnMapper[] columns = this.columns;
+        for (int i = 0; i < columns.length; ++i) {
+            columns[i].read(from, i, storage);
+        }
+    }
+
+    /**
+     * Binds entity values to INSERT/UPDATE statement parameters starting with 1
+     */
+    void bind(Object storage, SQLiteStatement stmt) throws Exception {
+        final ColumnMapper[] params = this.params;
+        for (int i = 0; i < params.length; ++i) {
+            params[i].bind(storage, stmt, i + 1);
+        }
+    }
+
+    /**
+     * Binds entity values of selected parameters to statement parameters starting with 1
+     *
+     * @param paramIndexes indexes in {@link #params}
+     */
+    void bind(Object storage, SQLiteStatement stmt, int[] paramIndexes) throws Exception {
+        final ColumnMapper[] params = this.params;
+        for (int i = 0; i < paramIndexes.length; ++i) {
+            params[paramIndexes[i]].bind(storage, stmt, i + 1);
+        }
+    }
+
+    /**
+     * Copies INSERT/UPDATE parameter values of the entity.
+     * Dates are kept as milliseconds and blobs are cloned, so later changes of the entity do not alter the copy.
+     */
+    Object[] snapshot(Object storage) throws Exception {
+        final FieldData[] paramFields = this.paramFields;
+        Object[] values = new Object[paramFields.length];
+        for (int i = 0; i < paramFields.length; ++i) {
+            Object value = paramFields[i].valueAccessor.getValue(storage);
+            if (value instanceof Date) {
+                value = ((Date) value).getTime();
+            } else if (value instanceof byte[]) {
+                value = ((byte[]) value).clone();
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    /**
+     * Compares two snapshots
+     *
+     * @return indexes of changed parameters
+     */
+    static int[] getChangedParams(Object[] oldValues, Object[] newValues) {
+        int[] changed = new int[newValues.length];
+        int count = 0;
+        for (int i = 0; i < newValues.length; ++i) {
+            Object oldValue = oldValues[i];
+            Object newValue = newValues[i];
+            boolean equal;
+            if (oldValue == null || newValue == null) {
+                equal = oldValue == newValue;
+            } else if (oldValue instanceof byte[] && newValue instanceof byte[]) {
+                equal = Arrays.equals((byte[]) oldValue, (byte[]) newValue);
+            } else {
+                equal = oldValue.equals(newValue);
+            }
+            if (!equal) {
+                changed[count] = i;
+                count++;
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    static ColumnMapper createColumnMapper(FieldData field) {
+        ColumnAccessor accessor = field.valueAccessor;
+        switch (field.dataType) {
+            case BOOLEAN:
+                if (accessor instanceof BooleanColumnAccessor) {
+                    return new BooleanMapper((BooleanColumnAccessor) accessor, field.nullable);
+                }
+                break;
+            case INT:
+                if (accessor instanceof IntColumnAccessor) {
+                    return new IntMapper((IntColumnAccessor) accessor, field.nullable);
+                }
+                break;
+            case LONG:
+                if (accessor instanceof LongColumnAccessor) {
+                    return new LongMapper((LongColumnAccessor) accessor, field.nullable);
+                }
+                break;
+            case DOUBLE:
+                if (accessor instanceof DoubleColumnAccessor) {
+                    return new DoubleMapper((DoubleColumnAccessor) accessor, field.nullable);
+                }
+                break;
+            case STRING:
+                return new StringMapper(accessor);
+            case DATE:
+                return new DateMapper(accessor);
+            case BYTE_ARRAY:
+                return new BlobMapper(accessor);
+        }
+        return new BoxedMapper(accessor, field.dataType);
+    }
+
+    static abstract class ColumnMapper {
+        abstract void read(Cursor from, int column, Object storage) throws Exception;
+        abstract void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception;
+    }
+
+    static final class BooleanMapper extends ColumnMapper {
+        final BooleanColumnAccessor accessor;
+        final boolean nullable;
+        BooleanMapper(BooleanColumnAccessor accessor, boolean nullable) {
+            this.accessor = accessor;
+            this.nullable = nullable;
+        }
+
+        @Override
+        void read(Cursor from, int column, Object storage) throws Exception {
+            boolean b = !(nullable && from.isNull(column)) && from.getInt(column) != 0;
+            accessor.setBoolean(b, storage);
+        }
+
+        @Override
+        void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception {
+            stmt.bindLong(paramNo, accessor.getBoolean(storage) ? 1 : 0);
+        }
+    }
+
+    static final class IntMapper extends ColumnMapper {
+        final IntColumnAccessor accessor;
+        final boolean nullable;
+        IntMapper(IntColumnAccessor accessor, boolean nullable) {
+            this.accessor = accessor;
+            this.nullable = nullable;
+        }
+
+        @Override
+        void read(Cursor from, int column, Object storage) throws Exception {
+            int i = nullable && from.isNull(column) ? 0 : from.getInt(column);
+            accessor.setInt(i, storage);
+        }
+
+        @Override
+        void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception {
+            stmt.bindLong(paramNo, accessor.getInt(storage));
+        }
+    }
+
+    static final class LongMapper extends ColumnMapper {
+        final LongColumnAccessor accessor;
+        final boolean nullable;
+        LongMapper(LongColumnAccessor accessor, boolean nullable) {
+            this.accessor = accessor;
+            this.nullable = nullable;
+        }
+
+        @Override
+        void read(Cursor from, int column, Object storage) throws Exception {
+            long l = nullable && from.isNull(column) ? 0L : from.getLong(column);
+            accessor.setLong(l, storage);
+        }
+
+        @Override
+        void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception {
+            stmt.bindLong(paramNo, accessor.getLong(storage));
+        }
+    }
+
+    static final class DoubleMapper extends ColumnMapper {
+        final DoubleColumnAccessor accessor;
+        final boolean nullable;
+        DoubleMapper(DoubleColumnAccessor accessor, boolean nullable) {
+            this.accessor = accessor;
+            this.nullable = nullable;
+        }
+
+        @Override
+        void read(Cursor from, int column, Object storage) throws Exception {
+            double d = nullable && from.isNull(column) ? 0.0 : from.getDouble(column);
+            accessor.setDouble(d, storage);
+        }
+
+        @Override
+        void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception {
+            stmt.bindDouble(paramNo, accessor.getDouble(storage));
+        }
+    }
+
+    static final class StringMapper extends ColumnMapper {
+        final ColumnAccessor accessor;
+        StringMapper(ColumnAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void read(Cursor from, int column, Object storage) throws Exception {
+            accessor.setValue(from.isNull(column) ? null : from.getString(column), storage);
+        }
+
+        @Override
+        void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception {
+            Object o = accessor.getValue(storage);
+            if (o != null) {
+                stmt.bindString(paramNo, (String) o);
+            } else {
+                stmt.bindNull(paramNo);
+            }
+        }
+    }
+
+    static final class DateMapper extends ColumnMapper {
+        final ColumnAccessor accessor;
+        DateMapper(ColumnAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void read(Cursor from, int column, Object storage) throws Exception {
+            Date dt = null;
+            if (!from.isNull(column)) {
+                long l = from.getLong(column);
+                if (l > 0) {
+                    dt = new Date(l);
+                }
+            }
+            accessor.setValue(dt, storage);
+        }
+
+        @Override
+        void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception {
+            Object o = accessor.getValue(storage);
+            if (o != null) {
+                stmt.bindLong(paramNo, ((Date) o).getTime());
+            } else {
+                stmt.bindNull(paramNo);
+            }
+        }
+    }
+
+    static final class BlobMapper extends ColumnMapper {
+        final ColumnAccessor accessor;
+        BlobMapper(ColumnAccessor accessor) {
+            this.accessor = accessor;
+        }
+
+        @Override
+        void read(Cursor from, int column, Object storage) throws Exception {
+            accessor.setValue(from.isNull(column) ? null : from.getBlob(column), storage);
+        }
+
+        @Override
+        void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception {
+            Object o = accessor.getValue(storage);
+            if (o != null) {
+                stmt.bindBlob(paramNo, (byte[]) o);
+            } else {
+                stmt.bindNull(paramNo);
+            }
+        }
+    }
+
+    /**
+     * Primitive column with accessor that does not support unboxed access
+     */
+    static final class BoxedMapper extends ColumnMapper {
+        final ColumnAccessor accessor;
+        final FieldDataType dataType;
+        BoxedMapper(ColumnAccessor accessor, FieldDataType dataType) {
+            this.accessor = accessor;
+            this.dataType = dataType;
+        }
+
+        @Override
+        void read(Cursor from, int column, Object storage) throws Exception {
+            boolean isNull = from.isNull(column);
+            Object value;
+            switch (dataType) {
+                case BOOLEAN:
+                    value = !isNull && from.getInt(column) != 0;
+                    break;
+                case INT:
+                    value = isNull ? 0 : from.getInt(column);
+                    break;
+                case LONG:
+                    value = isNull ? 0L : from.getLong(column);
+                    break;
+                case DOUBLE:
+                    value = isNull ? 0.0 : from.getDouble(column);
+                    break;
+                default:
+                    throw new DataAccessException(String.format("Unsupported data type: \"%s\"", dataType.toString()));
+            }
+            accessor.setValue(value, storage);
+        }
+
+        @Override
+        void bind(Object storage, SQLiteStatement stmt, int paramNo) throws Exception {
+            Object o = accessor.getValue(storage);
+            if (o == null) {
+                stmt.bindNull(paramNo);
+                return;
+            }
+            switch (dataType) {
+                case BOOLEAN:
+                    stmt.bindLong(paramNo, (Boolean) o ? 1 : 0);
+                    break;
+                case INT:
+                    stmt.bindLong(paramNo, (Integer) o);
+                    break;
+                case LONG:
+                    stmt.bindLong(paramNo, (Long) o);
+                    break;
+                case DOUBLE:
+                    stmt.bindDouble(paramNo, (Double) o);
+                    break;
+                default:
+                    throw new DataAccessException(String.format("Unsupported data type: \"%s\"", dataType.toString()));
+            }
+        }
+    }
+}
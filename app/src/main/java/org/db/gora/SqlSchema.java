@@ -19,6 +19,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class SqlSchema {
 	
@@ -137,6 +138,23 @@ public abstract class SqlSchema {
         }
         return null;
     }
+
+    /**
+     * Returns links from the detail class to its linked entities
+     */
+    public List<TableLinkData> getMasterLinks(Class<?> detailClazz) {
+        List<TableLinkData> result = new ArrayList<>();
+        if (detailClazz != null) {
+            for (List<TableLinkData> links: entityLinkMap.values()) {
+                for (TableLinkData link: links) {
+                    if (link.detailClass == detailClazz) {
+                        result.add(link);
+                    }
+                }
+            }
+        }
+        return result;
+    }
 	
 	/**
 	 * Contains parent/child relationship
@@ -192,7 +210,54 @@ public abstract class SqlSchema {
         }
 	}
 	
-	final Map<Class<?>, TableQueryBuilder> queryBuilders = new HashMap<>();
+	/**
+	 * Adds a column with the root ID to every descendant table of the aggregate.
+	 * Children of any depth are then read and deleted by root ID without joins through the intermediate tables.
+	 * The column is maintained by {@link SqliteManager} writes. Should be called after the children are registered.
+	 *
+	 * @param rootClass aggregate root class
+	 * @param columnName name of the root ID column
+	 * @throws DataIntegrityException
+	 */
+	public void registerRootKey(Class<?> rootClass, String columnName) throws DataIntegrityException {
+		if (rootClass == null) {
+			throw new DataIntegrityException("Root key: Root class is null");
+		}
+		if (columnName == null || columnName.length() == 0) {
+			throw new DataIntegrityException("Root key: Column name is empty");
+		}
+		if (!tableMap.containsKey(rootClass)) {
+			throw new DataIntegrityException(String.format("Root key: Table class %s is not registered", rootClass.getName()));
+		}
+		if (parentMap.containsKey(rootClass)) {
+			throw new DataIntegrityException(String.format("Root key: Table class %s is not an aggregate root", rootClass.getName()));
+		}
+		registerRootKey(rootClass, rootClass, columnName);
+	}
+
+	private void registerRootKey(Class<?> clazz, Class<?> rootClass, String columnName) throws DataIntegrityException {
+		List<ChildTableData> children = childMap.get(clazz);
+		if (children == null) return;
+
+		for (ChildTableData child: children) {
+			for (Class<?> cc: child.children) {
+				TableData childData = tableMap.get(cc);
+				if (childData.getFieldByName(columnName) != null) {
+					throw new DataIntegrityException(String.format("Root key: Table %s already has column %s", childData.tableName, columnName));
+				}
+				FieldData rootKey = new FieldData();
+				rootKey.columnName = columnName;
+				rootKey.dataType = FieldDataType.LONG;
+				rootKey.nullable = true;
+				childData.rootKey = rootKey;
+				childData.rootClass = rootClass;
+
+				registerRootKey(cc, rootClass, columnName);
+			}
+		}
+	}
+
+	final Map<Class<?>, TableQueryBuilder> queryBuilders = new ConcurrentHashMap<>();
 	TableQueryBuilder getQueryBuilder(Class<?> clazz) {
 		TableQueryBuilder result = queryBuilders.get(clazz);
 		if (result == null) {
@@ -213,7 +278,7 @@ public abstract class SqlSchema {
 					String.format("Linked Query Builder: Classes %s is not registered.", 
 							clazz.getName())); 
 		}
-		TableQueryBuilder.LinkedQueryBuilder result = tableBuilder.linkedBuilders.get(clazz);
+		TableQueryBuilder.LinkedQueryBuilder result = tableBuilder.linkedBuilders.get(idClazz);
 		if (result == null) {
 			Class<?> current = clazz;
 			ArrayList<TableData> pathToId = new ArrayList<>();
@@ -0,0 +1,401 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.db.gora;
+
+import android.database.CharArrayBuffer;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * {@link DataManager} over one writer connection and a pool of reader connections to the same database.
+ * <p>The database is switched to write-ahead logging, so readers see the last committed state
+ * and are not blocked by a long write transaction. Reader connections are opened read-only. Reads and queries use a reader connection,
+ * writes and deletes use the writer connection of {@link #getWriter()}.
+ * <p>Reader managers share the entity cache, query cache and change tracker of the writer manager;
+ * set them on the writer before creating the pool.
+ * In-memory databases cannot be shared by connections, the writer is used for reads then.
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+public class SqliteConnectionPool implements DataManager {
+    private static final String TAG = "GORA";
+
+    final SqliteManager mWriter;
+    final List<SQLiteDatabase> mReaderDatabases = new ArrayList<>();
+    final BlockingQueue<SqliteManager> mReaders;
+
+    /**
+     * @param helper        database helper. The writer connection is {@link DatabaseHelper#getWritableDatabase()}
+     * @param readerCount   number of reader connections
+     */
+    public SqliteConnectionPool(DatabaseHelper helper, int readerCount) {
+        this(new SqliteManager(helper.getWritableDatabase(), helper.getSchema()), readerCount);
+    }
+
+    /**
+     * @param writer        manager of the writer connection
+     * @param readerCount   number of reader connections
+     */
+    public SqliteConnectionPool(SqliteManager writer, int readerCount) {
+        mWriter = writer;
+
+        SQLiteDatabase db = writer.mDb;
+        String path = db.getPath();
+        boolean isMemory = path == null || path.length() == 0 || ":memory:".equals(path);
+        if (!isMemory && !db.inTransaction()) {
+            db.enableWriteAheadLogging();
+        }
+
+        if (isMemory || readerCount < 1) {
+            mReaders = new ArrayBlockingQueue<>(1);
+            mReaders.add(writer);
+            return;
+        }
+
+        mReaders = new ArrayBlockingQueue<>(readerCount);
+        for (int i = 0; i < readerCount; ++i) {
+            SQLiteDatabase readerDb = SQLiteDatabase.openDatabase(path, null, SQLiteDatabase.OPEN_READONLY);
+            mReaderDatabases.add(readerDb);
+            SqliteManager reader = new SqliteManager(readerDb, writer.mSchema);
+            mReaders.add(reader);
+        }
+    }
+
+    /**
+     * Returns manager of the writer connection
+     */
+    public SqliteManager getWriter() {
+        return mWriter;
+    }
+
+    @Override
+    public SqlSchema getSchema() {
+        return mWriter.getSchema();
+    }
+
+    /**
+     * Takes a reader manager from the pool, waits if all readers are in use.
+     * The reader should be returned with {@link #releaseReader(SqliteManager)}
+     */
+    public SqliteManager acquireReader() throws DataAccessException {
+        SqliteManager reader;
+        try {
+            reader = mReaders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DataAccessException("SqliteConnectionPool: Interrupted while waiting for reader", e);
+        }
+        if (reader != mWriter) {
+            reader.shareCaches(mWriter);
+            if (reader.getPrepareStatements() != mWriter.getPrepareStatements()) {
+                reader.setPrepareStatements(mWriter.getPrepareStatements());
+            }
+        }
+        return reader;
+    }
+
+    public void releaseReader(SqliteManager reader) {
+        if (reader != null) {
+            mReaders.offer(reader);
+        }
+    }
+
+    /**
+     * Closes reader connections. The writer connection is owned by {@link DatabaseHelper}
+     */
+    public void close() {
+        for (SQLiteDatabase db: mReaderDatabases) {
+            db.close();
+        }
+        mReaderDatabases.clear();
+    }
+
+    @Override
+    public long[] queryIds(Class<?> clazz, String where, String[] whereArgs, String orderBy) throws DataAccessException {
+        SqliteManager reader = acquireReader();
+        try {
+            return reader.queryIds(clazz, where, whereArgs, orderBy);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    @Override
+    public <T> ClosableIterator<T> query(Class<T> clazz, String where, String[] whereArgs) throws DataAccessException {
+        SqliteManager reader = acquireReader();
+        try {
+            return new ReaderIterator<>(reader, reader.query(clazz, where, whereArgs));
+        } catch (DataAccessException | RuntimeException e) {
+            releaseReader(reader);
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> ClosableIterator<T> query(Class<T> clazz, String where, String[] whereArgs, int pageSize) throws DataAccessException {
+        SqliteManager reader = acquireReader();
+        try {
+            return new ReaderIterator<>(reader, reader.query(clazz, where, whereArgs, pageSize));
+        } catch (DataAccessException | RuntimeException e) {
+            releaseReader(reader);
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> ClosableIterator<T> query(Class<T> clazz, String where, String[] whereArgs, int pageSize, FetchPlan plan) throws DataAccessException {
+        SqliteManager reader = acquireReader();
+        try {
+            return new ReaderIterator<>(reader, reader.query(clazz, where, whereArgs, pageSize, plan));
+        } catch (DataAccessException | RuntimeException e) {
+            releaseReader(reader);
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> T read(Class<T> clazz, long id) throws DataAccessException {
+        SqliteManager reader = acquireReader();
+        try {
+            return reader.read(clazz, id);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    @Override
+    public <T> T read(Class<T> clazz, long id, FetchPlan plan) throws DataAccessException {
+        SqliteManager reader = acquireReader();
+        try {
+            return reader.read(clazz, id, plan);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    @Override
+    public <T> List<T> readAll(Class<T> clazz, long[] ids) throws DataAccessException {
+        SqliteManager reader = acquireReader();
+        try {
+            return reader.readAll(clazz, ids);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    @Override
+    public <T> List<T> readAll(Class<T> clazz, long[] ids, FetchPlan plan) throws DataAccessException {
+        SqliteManager reader = acquireReader();
+        try {
+            return reader.readAll(clazz, ids, plan);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    @Override
+    public <T> boolean write(T entity) throws DataAccessException {
+        return mWriter.write(entity);
+    }
+
+    @Override
+    public <T> int writeAll(Collection<T> entities) throws DataAccessException {
+        return mWriter.writeAll(entities);
+    }
+
+    @Override
+    public void delete(Class<?> clazz, long id) throws DataAccessException {
+        mWriter.delete(clazz, id);
+    }
+
+    @Override
+    public int delete(Class<?> clazz, long[] ids) throws DataAccessException {
+        return mWriter.delete(clazz, ids);
+    }
+
+    @Override
+    public int deleteWhere(Class<?> clazz, String where, String[] whereArgs) throws DataAccessException {
+        return mWriter.deleteWhere(clazz, where, whereArgs);
+    }
+
+    @Override
+    public long[] queryLinks(Class<?> detailClazz, Class<?> masterClazz, long masterId) throws DataAccessException, DataIntegrityException {
+        SqliteManager reader = acquireReader();
+        try {
+            return reader.queryLinks(detailClazz, masterClazz, masterId);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    @Override
+    public FieldCursor queryFields(Class<?> clazz, String where, String[] whereArgs, String... fields) throws DataAccessException, DataIntegrityException {
+        SqliteManager reader = acquireReader();
+        try {
+            return new ReaderFieldCursor(reader, reader.queryFields(clazz, where, whereArgs, fields));
+        } catch (DataAccessException | DataIntegrityException | RuntimeException e) {
+            releaseReader(reader);
+            throw e;
+        }
+    }
+
+    @Override
+    public <P> List<P> queryProjection(Class<?> clazz, Class<P> projectionClass, String where, String[] whereArgs, String orderBy) throws DataAccessException, DataIntegrityException {
+        SqliteManager reader = acquireReader();
+        try {
+            return reader.queryProjection(clazz, projectionClass, where, whereArgs, orderBy);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    @Override
+    public long[] queryKeywords(Class<?> clazz, String criteria) throws DataAccessException, DataIntegrityException {
+        SqliteManager reader = acquireReader();
+        try {
+            return reader.queryKeywords(clazz, criteria);
+        } finally {
+            releaseReader(reader);
+        }
+    }
+
+    /**
+     * Returns the reader to the pool when iteration ends or the iterator is closed
+     */
+    final class ReaderIterator<T> implements ClosableIterator<T> {
+        SqliteManager mReader;
+        final ClosableIterator<T> mIterator;
+
+        ReaderIterator(SqliteManager reader, ClosableIterator<T> iterator) {
+            mReader = reader;
+            mIterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (mReader == null) return false;
+            if (mIterator.hasNext()) return true;
+            close();
+            return false;
+        }
+
+        @Override
+        public T next() {
+            return mIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            mIterator.remove();
+        }
+
+        @Override
+        public void close() {
+            if (mReader == null) return;
+            try {
+                mIterator.close();
+            } catch (IOException e) {
+                Log.e(TAG, "SqliteConnectionPool: close", e);
+            }
+            releaseReader(mReader);
+            mReader = null;
+        }
+    }
+
+    /**
+     * Returns the reader to the pool when the cursor is closed
+     */
+    final class ReaderFieldCursor implements FieldCursor {
+        SqliteManager mReader;
+        final FieldCursor mCursor;
+
+        ReaderFieldCursor(SqliteManager reader, FieldCursor cursor) {
+            mReader = reader;
+            mCursor = cursor;
+        }
+
+        @Override
+        public long getId() throws DataAccessException {
+            return mCursor.getId();
+        }
+
+        @Override
+        public Object getFieldValue(int fieldNo) throws DataAccessException {
+            return mCursor.getFieldValue(fieldNo);
+        }
+
+        @Override
+        public FieldDataType getFieldType(int fieldNo) {
+            return mCursor.getFieldType(fieldNo);
+        }
+
+        @Override
+        public boolean isNull(int fieldNo) throws DataAccessException {
+            return mCursor.isNull(fieldNo);
+        }
+
+        @Override
+        public long getLong(int fieldNo) throws DataAccessException {
+            return mCursor.getLong(fieldNo);
+        }
+
+        @Override
+        public int getInt(int fieldNo) throws DataAccessException {
+            return mCursor.getInt(fieldNo);
+        }
+
+        @Override
+        public double getDouble(int fieldNo) throws DataAccessException {
+            return mCursor.getDouble(fieldNo);
+        }
+
+        @Override
+        public String getString(int fieldNo) throws DataAccessException {
+            return mCursor.getString(fieldNo);
+        }
+
+        @Override
+        public void copyStringToBuffer(int fieldNo, CharArrayBuffer buffer) throws DataAccessException {
+            mCursor.copyStringToBuffer(fieldNo, buffer);
+        }
+
+        @Override
+        public boolean eof() {
+            return mCursor.eof();
+        }
+
+        @Override
+        public boolean next() {
+            return mCursor.next();
+        }
+
+        @Override
+        public void close() {
+            if (mReader == null) return;
+            mCursor.close();
+            releaseReader(mReader);
+            mReader = null;
+        }
+    }
+}
@@ -14,8 +14,9 @@
 
 package org.db.gora;
 
-import android.content.ContentValues;
+import android.database.CharArrayBuffer;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
@@ -25,17 +26,18 @@ import java.nio.ByteOrder;
 import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Android SQLite implementation of {@link DataManager}
@@ -47,8 +49,8 @@ public class SqliteManager implements DataManager {
 	final SQLiteDatabase mDb;
 	final SqlSchema mSchema;
 
-	private final ConcurrentLinkedQueue<ContentValues> mValues = new ConcurrentLinkedQueue<>();
-    private final Map<Integer, SQLiteStatement> preparedStmts = new HashMap<>();
+    private final ThreadLocal<StatementCache> mStatementCache = new ThreadLocal<>();
+    private final Set<StatementCache> mStatementCaches = Collections.newSetFromMap(new ConcurrentHashMap<StatementCache, Boolean>());
 
 	public SqliteManager(SQLiteDatabase db, SqlSchema schema) {
 		mDb = db;
@@ -57,19 +59,190 @@ public class SqliteManager implements DataManager {
         prepareStatements = false;
 	}
 
-    private boolean prepareStatements;
+    @Override
+    public SqlSchema getSchema() {
+        return mSchema;
+    }
+
+    /**
+     * Maximum number of compiled statements cached per thread
+     */
+    static final int STATEMENT_CACHE_SIZE = 32;
+
+    private volatile boolean prepareStatements;
     public boolean getPrepareStatements() {
         return prepareStatements;
     }
+
+    /**
+     * Enables caching of compiled statements.
+     * <p>INSERT, UPDATE and DELETE statements are kept in a per-thread LRU of {@link #STATEMENT_CACHE_SIZE} entries.
+     * SELECT statements are cached by SQLite connection, its cache is raised to
+     * {@link SQLiteDatabase#MAX_SQL_CACHE_SIZE}. ID lists are padded to a few fixed sizes,
+     * so queries by IDs produce a limited number of distinct SQL strings.
+     */
     public void setPrepareStatements(boolean value) {
         prepareStatements = value;
-        if (!prepareStatements) {
-            synchronized (preparedStmts) {
-                for (Map.Entry<Integer, SQLiteStatement> stmt: preparedStmts.entrySet()) {
-                    stmt.getValue().close();
-                }
-                preparedStmts.clear();
+        if (prepareStatements) {
+            mDb.setMaxSqlCacheSize(SQLiteDatabase.MAX_SQL_CACHE_SIZE);
+        } else {
+            for (StatementCache cache: mStatementCaches) {
+                cache.close();
+            }
+            mStatementCaches.clear();
+        }
+    }
+
+    private StatementCache getStatementCache() {
+        if (!prepareStatements) return null;
+
+        StatementCache cache = mStatementCache.get();
+        if (cache == null || cache.isClosed()) {
+            cache = new StatementCache(STATEMENT_CACHE_SIZE);
+            mStatementCache.set(cache);
+            mStatementCaches.add(cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Returns a cached compiled statement or compiles a new one.
+     * The statement should be returned by {@link #releaseStatement(String, SQLiteStatement)}
+     */
+    private SQLiteStatement acquireStatement(String sql) {
+        StatementCache cache = getStatementCache();
+        SQLiteStatement stmt = cache != null ? cache.acquire(sql) : null;
+        if (stmt == null) {
+            stmt = mDb.compileStatement(sql);
+        }
+        return stmt;
+    }
+
+    private void releaseStatement(String sql, SQLiteStatement stmt) {
+        StatementCache cache = getStatementCache();
+        if (cache == null || !cache.release(sql, stmt)) {
+            stmt.close();
+        }
+    }
+
+    private volatile EntityCache mEntityCache;
+    public EntityCache getEntityCache() {
+        return mEntityCache;
+    }
+
+    /**
+     * Sets the cache of entities read by {@link #read(Class, long)} and {@link #readAll(Class, long[])}.
+     *
+     * @param cache entity cache or null to disable caching
+     */
+    public void setEntityCache(EntityCache cache) {
+        EntityCache oldCache = mEntityCache;
+        mEntityCache = cache;
+        if (oldCache != null) {
+            oldCache.evictAll();
+        }
+    }
+
+    private volatile QueryCache mQueryCache;
+    public QueryCache getQueryCache() {
+        return mQueryCache;
+    }
+
+    /**
+     * Sets the cache of ID arrays returned by {@link #queryIds(Class, String, String[], String)}
+     * and {@link #queryKeywords(Class, String)}.
+     *
+     * @param cache query cache or null to disable caching
+     */
+    public void setQueryCache(QueryCache cache) {
+        QueryCache oldCache = mQueryCache;
+        mQueryCache = cache;
+        if (oldCache != null) {
+            oldCache.evictAll();
+        }
+    }
+
+    private volatile ChangeTracker mChangeTracker;
+    public ChangeTracker getChangeTracker() {
+        return mChangeTracker;
+    }
+
+    /**
+     * Sets the tracker of column values of rows read and written.
+     * With the tracker, {@link #write(Object)} skips unchanged rows and updates only changed columns.
+     *
+     * @param tracker change tracker or null to always update all columns
+     */
+    public void setChangeTracker(ChangeTracker tracker) {
+        ChangeTracker oldTracker = mChangeTracker;
+        mChangeTracker = tracker;
+        if (oldTracker != null) {
+            oldTracker.evictAll();
+        }
+    }
+
+    /**
+     * Entities read with a partial {@link FetchPlan}, see {@link #read(Class, long, FetchPlan)}
+     */
+    private volatile PartialEntities mPartialEntities = new PartialEntities();
+
+    /**
+     * Uses the caches of the other manager without evicting the current ones.
+     * Managers of separate connections to one database share caches,
+     * so writes through one manager invalidate entities read through another.
+     */
+    void shareCaches(SqliteManager other) {
+        mEntityCache = other.mEntityCache;
+        mQueryCache = other.mQueryCache;
+        mChangeTracker = other.mChangeTracker;
+        mPartialEntities = other.mPartialEntities;
+    }
+
+    private void beginChangeTracking(ChangeTracker tracker) {
+        if (tracker != null) {
+            tracker.beginUpdate();
+        }
+    }
+
+    /**
+     * @param success false if the transaction was rolled back, snapshots written in it are invalid
+     */
+    private void endChangeTracking(ChangeTracker tracker, boolean success) {
+        if (tracker != null) {
+            if (!success) {
+                tracker.evictAll();
             }
+            tracker.endUpdate();
+        }
+    }
+
+    /**
+     * Stores the snapshot of a row read
+     */
+    private static void trackRow(ChangeTracker tracker, RowMapper rowMapper, Object entity, long generation) throws Exception {
+        long id = getLongValue(rowMapper.tableData.primaryKey.valueAccessor, entity);
+        tracker.put(entity.getClass(), id, rowMapper.snapshot(entity), generation);
+    }
+
+    private void beginQueryCacheUpdate(QueryCache queryCache) {
+        if (queryCache != null) {
+            queryCache.beginUpdate();
+        }
+    }
+
+    private void endQueryCacheUpdate(QueryCache queryCache) {
+        if (queryCache != null) {
+            queryCache.endUpdate();
+        }
+    }
+
+    /**
+     * Invalidates cached query results of the table
+     */
+    private void invalidateQueries(TableData tableData) {
+        QueryCache queryCache = mQueryCache;
+        if (queryCache != null) {
+            queryCache.invalidateTable(tableData.tableName);
         }
     }
 
@@ -181,11 +354,343 @@ public class SqliteManager implements DataManager {
         if (tableData == null) {
             throw new DataAccessException(String.format("SQLiteManager: Class %s is not registered", clazz.getName()));
         }
-        return new PredicateBuilder(tableData);
+        return new PredicateBuilder(tableData, mSchema);
+    }
+
+    private void checkPredicate(Class<?> clazz, PredicateBuilder.Predicate where) throws DataAccessException {
+        if (clazz == null || where == null) return;
+        TableData tableData = mSchema.getTableData(clazz);
+        if (tableData != null && where.mTable != tableData) {
+            throw new DataAccessException(String.format("SQLiteManager: Predicate is not built for class %s", clazz.getName()));
+        }
+    }
+
+    /**
+     * Counts rows according to where clause with a single COUNT(*) query.
+     * The count is kept in the query cache if set.
+     */
+    public long count(Class<?> clazz, String where, String[] whereArgs) throws DataAccessException {
+        return count(clazz, where, whereArgs, mQueryCache);
+    }
+
+    /**
+     * @param queryCache query cache or null if the where clause depends on other tables
+     */
+    private long count(Class<?> clazz, String where, String[] whereArgs, QueryCache queryCache) throws DataAccessException {
+        TableData tableData = getAggregateTable(clazz);
+        if (where == null || where.length() == 0) {
+            where = "1";
+        }
+        String query = String.format("SELECT COUNT(*) FROM %s WHERE %s", tableData.tableName, where);
+
+        String key = null;
+        long version = 0;
+        long generation = 0;
+        if (queryCache != null) {
+            key = QueryCache.getKey("count", query, whereArgs);
+            long[] cached = queryCache.get(tableData.tableName, key);
+            if (cached != null && cached.length == 1) {
+                return cached[0];
+            }
+            generation = queryCache.getGeneration();
+            version = queryCache.getTableVersion(tableData.tableName);
+        }
+
+        long count = DatabaseUtils.longForQuery(mDb, query, whereArgs);
+        if (queryCache != null) {
+            queryCache.put(tableData.tableName, key, new long[] {count}, version, generation);
+        }
+        return count;
+    }
+
+    /**
+     * Counts rows according to compiled predicate
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public long count(Class<?> clazz, PredicateBuilder.Predicate where) throws DataAccessException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? count(clazz, where.getWhereClause(), where.getWhereArgs(), where.isLinked() ? null : mQueryCache)
+                : count(clazz, null, null, mQueryCache);
+    }
+
+    /**
+     * Runs an aggregate query according to where clause as a single SQL statement.
+     * Rows are grouped and sorted by GROUP BY columns.
+     *
+     * @param aggregate aggregate functions and GROUP BY columns. See {@link PredicateBuilder#aggregate()}
+     */
+    public PredicateBuilder.AggregateResult queryAggregate(Class<?> clazz, PredicateBuilder.AggregateClause aggregate,
+                                                           String where, String[] whereArgs) throws DataAccessException {
+        TableData tableData = getAggregateTable(clazz);
+        if (aggregate == null) {
+            throw new DataAccessException("SQLiteManager: QueryAggregate: Null aggregate");
+        }
+        if (aggregate.getTable() != tableData) {
+            throw new DataAccessException(String.format("SQLiteManager: QueryAggregate: Aggregate is not built for class %s", clazz.getName()));
+        }
+        String select = aggregate.getSelectClause();
+        if (select.length() == 0) {
+            throw new DataAccessException("SQLiteManager: QueryAggregate: No aggregates");
+        }
+
+        if (where == null || where.length() == 0) {
+            where = "1";
+        }
+        String query = String.format("SELECT %s FROM %s WHERE %s", select, tableData.tableName, where);
+        String groupBy = aggregate.getGroupByClause();
+        if (groupBy.length() > 0) {
+            query += " GROUP BY " + groupBy + " ORDER BY " + groupBy;
+        }
+
+        ArrayList<Object[]> rows = new ArrayList<>();
+        Cursor cursor = mDb.rawQuery(query, whereArgs);
+        if (cursor != null) {
+            try {
+                int columnCount = cursor.getColumnCount();
+                while (cursor.moveToNext()) {
+                    Object[] row = new Object[columnCount];
+                    for (int i = 0; i < columnCount; ++i) {
+                        switch (cursor.getType(i)) {
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                row[i] = cursor.getLong(i);
+                                break;
+                            case Cursor.FIELD_TYPE_FLOAT:
+                                row[i] = cursor.getDouble(i);
+                                break;
+                            case Cursor.FIELD_TYPE_NULL:
+                                break;
+                            default:
+                                row[i] = cursor.getString(i);
+                                break;
+                        }
+                    }
+                    rows.add(row);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return new PredicateBuilder.AggregateResult(rows.toArray(new Object[rows.size()][]));
+    }
+
+    /**
+     * See {@link #queryAggregate(Class, PredicateBuilder.AggregateClause, String, String[])}
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public PredicateBuilder.AggregateResult queryAggregate(Class<?> clazz, PredicateBuilder.AggregateClause aggregate,
+                                                           PredicateBuilder.Predicate where) throws DataAccessException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? queryAggregate(clazz, aggregate, where.getWhereClause(), where.getWhereArgs())
+                : queryAggregate(clazz, aggregate, null, null);
+    }
+
+    private TableData getAggregateTable(Class<?> clazz) throws DataAccessException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: Aggregate: Null class");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: Aggregate: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
+            throw new DataAccessException("SQLiteManager: Aggregate: Sqlite database is not open");
+        }
+
+        TableData tableData = mSchema.getTableData(clazz);
+        if (tableData == null) {
+            throw new DataAccessException(String.format("SQLiteManager: Aggregate: class %s is not registered", clazz.getName()));
+        }
+        return tableData;
+    }
+
+    /**
+     * Retrieves entity IDs according to compiled predicate
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public long[] queryIds(Class<?> clazz, PredicateBuilder.Predicate where, String orderBy) throws DataAccessException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? queryIds(clazz, where.getWhereClause(), where.getWhereArgs(), orderBy, where.isLinked() ? null : mQueryCache)
+                : queryIds(clazz, null, null, orderBy, mQueryCache);
+    }
+
+    /**
+     * Retrieves entity fields according to compiled predicate
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public FieldCursor queryFields(Class<?> clazz, PredicateBuilder.Predicate where, String... fields) throws DataAccessException, DataIntegrityException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? queryFields(clazz, where.getWhereClause(), where.getWhereArgs(), fields)
+                : queryFields(clazz, null, null, fields);
+    }
+
+    /**
+     * Retrieves entities according to compiled predicate
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public <T> ClosableIterator<T> query(Class<T> clazz, PredicateBuilder.Predicate where, int pageSize) throws DataAccessException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? query(clazz, where.getWhereClause(), where.getWhereArgs(), pageSize)
+                : query(clazz, null, null, pageSize);
+    }
+
+    /**
+     * Retrieves entities according to compiled predicate, reads the children named by the fetch plan
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     * @param plan  children to read, null reads all children. See {@link FetchPlan}
+     */
+    public <T> ClosableIterator<T> query(Class<T> clazz, PredicateBuilder.Predicate where, int pageSize, FetchPlan plan) throws DataAccessException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? query(clazz, where.getWhereClause(), where.getWhereArgs(), pageSize, plan)
+                : query(clazz, null, null, pageSize, plan);
+    }
+
+    /**
+     * Retrieves a page of entity IDs with keyset pagination.
+     * <p>Rows are selected by the sort key of the last row of the previous page rather than skipped by offset,
+     * so every page costs an index seek plus the page size. The sort key is the ordered columns
+     * followed by the primary key. Entities of the page are read by {@link #readAll(Class, long[])}
+     *
+     * @param where     compiled predicate or null. See {@link PredicateBuilder.WhereClause#compile()}
+     * @param orderBy   sort order. See {@link PredicateBuilder#orderBy()}
+     * @param afterKey  {@link PredicateBuilder.Page#getLastKey()} of the previous page, null for the first page
+     * @param pageSize  maximum number of IDs
+     * @return          page of IDs
+     */
+    public PredicateBuilder.Page queryPage(Class<?> clazz, PredicateBuilder.Predicate where, PredicateBuilder.OrderByClause orderBy,
+                                           Object[] afterKey, int pageSize) throws DataAccessException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: QueryPage: Null class");
+        }
+        if (orderBy == null) {
+            throw new DataAccessException("SQLiteManager: QueryPage: Null order");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: QueryPage: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
+            throw new DataAccessException("SQLiteManager: QueryPage: Sqlite database is not open");
+        }
+
+        TableData tableData = mSchema.getTableData(clazz);
+        if (tableData == null) {
+            throw new DataAccessException(String.format("SQLiteManager: QueryPage: class %s is not registered", clazz.getName()));
+        }
+        checkPredicate(clazz, where);
+        if (orderBy.getTable() != tableData) {
+            throw new DataAccessException(String.format("SQLiteManager: QueryPage: Order is not built for class %s", clazz.getName()));
+        }
+
+        FieldData[] keyFields = orderBy.getKeyFields();
+        if (afterKey != null && afterKey.length != keyFields.length) {
+            throw new DataAccessException(String.format("SQLiteManager: QueryPage: Expected %d key values, got %d", keyFields.length, afterKey.length));
+        }
+        if (pageSize < 1) {
+            pageSize = 1;
+        }
+
+        StringBuilder whereClause = new StringBuilder();
+        ArrayList<String> args = new ArrayList<>();
+        if (where != null && where.getWhereClause().length() > 0) {
+            whereClause.append('(').append(where.getWhereClause()).append(')');
+            args.addAll(Arrays.asList(where.getWhereArgs()));
+        }
+        if (afterKey != null) {
+            PredicateBuilder.Predicate seek = orderBy.seek(afterKey);
+            if (whereClause.length() > 0) {
+                whereClause.append(" AND ");
+            }
+            whereClause.append('(').append(seek.getWhereClause()).append(')');
+            args.addAll(Arrays.asList(seek.getWhereArgs()));
+        }
+        if (whereClause.length() == 0) {
+            whereClause.append('1');
+        }
+
+        StringBuilder columns = new StringBuilder(tableData.primaryKey.columnName);
+        for (FieldData fd: keyFields) {
+            columns.append(", ").append(fd.columnName);
+        }
+        String query = String.format(Locale.US, "SELECT %s FROM %s WHERE %s ORDER BY %s LIMIT %d",
+                columns, tableData.tableName, whereClause, orderBy.getKeyOrderByClause(), pageSize + 1);
+
+        long[] ids = new long[Math.min(pageSize, 256)];
+        Object[] lastKey = null;
+        int pos = 0;
+        boolean hasMore = false;
+        Cursor cursor = mDb.rawQuery(query, args.toArray(new String[args.size()]));
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    if (pos >= pageSize) {
+                        hasMore = true;
+                        break;
+                    }
+                    if (pos >= ids.length) {
+                        ids = Arrays.copyOf(ids, Math.min(ids.length * 2, pageSize));
+                    }
+                    ids[pos] = cursor.getLong(0);
+                    ++pos;
+                    if (cursor.isLast() || pos >= pageSize) {
+                        lastKey = readKey(cursor, keyFields);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        return new PredicateBuilder.Page(Arrays.copyOf(ids, pos), lastKey, hasMore);
+    }
+
+    /**
+     * Reads sort key values stored after the ID column
+     */
+    private static Object[] readKey(Cursor cursor, FieldData[] keyFields) {
+        Object[] key = new Object[keyFields.length];
+        for (int i = 0; i < keyFields.length; ++i) {
+            int column = i + 1;
+            if (cursor.isNull(column)) continue;
+            switch (keyFields[i].dataType) {
+                case INT:
+                case LONG:
+                case BOOLEAN:
+                case DATE:
+                    key[i] = cursor.getLong(column);
+                    break;
+                case DOUBLE:
+                    key[i] = cursor.getDouble(column);
+                    break;
+                case BYTE_ARRAY:
+                    key[i] = cursor.getBlob(column);
+                    break;
+                default:
+                    key[i] = cursor.getString(column);
+                    break;
+            }
+        }
+        return key;
     }
 
     @Override
     public long[] queryIds(Class<?> clazz, String where, String[] whereArgs, String orderBy) throws DataAccessException {
+        return queryIds(clazz, where, whereArgs, orderBy, mQueryCache);
+    }
+
+    /**
+     * @param queryCache query cache or null if the where clause depends on other tables
+     */
+    private long[] queryIds(Class<?> clazz, String where, String[] whereArgs, String orderBy, QueryCache queryCache) throws DataAccessException {
         if (clazz == null) {
             throw new DataAccessException("SQLiteManager: QueryIds: Null class");
         }
@@ -207,22 +712,48 @@ public class SqliteManager implements DataManager {
             where = "1";
         }
 
-        Cursor cursor = mDb.query(tableData.tableName, new String[] {tableData.primaryKey.columnName}, where, whereArgs, null, null, orderBy);
+        String query = String.format("SELECT %s FROM %s WHERE %s", tableData.primaryKey.columnName, tableData.tableName, where);
+        if (orderBy != null && orderBy.length() > 0) {
+            query += " ORDER BY " + orderBy;
+        }
+
+        String key = null;
+        long version = 0;
+        long generation = 0;
+        if (queryCache != null) {
+            key = QueryCache.getKey("ids", query, whereArgs);
+            long[] cached = queryCache.get(tableData.tableName, key);
+            if (cached != null) {
+                return cached;
+            }
+            generation = queryCache.getGeneration();
+            version = queryCache.getTableVersion(tableData.tableName);
+        }
+
+        long[] result = null;
+        Cursor cursor = mDb.rawQuery(query, whereArgs);
         if (cursor != null) {
-            long[] ids = new long[256];
-            int pos = 0;
-            if (cursor.moveToNext()) {
-                ids[pos] = cursor.getLong(0);
-                ++pos;
-                if (pos >= ids.length) {
-                    ids = Arrays.copyOf(ids, ids.length * 2);
+            try {
+                long[] ids = new long[256];
+                int pos = 0;
+                while (cursor.moveToNext()) {
+                    ids[pos] = cursor.getLong(0);
+                    ++pos;
+                    if (pos >= ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                    }
                 }
+                result = Arrays.copyOf(ids, pos);
+            } finally {
+                cursor.close();
             }
-            cursor.close();
-            return Arrays.copyOf(ids, pos);
         }
 
-        return null;
+        if (queryCache != null) {
+            queryCache.put(tableData.tableName, key, result, version, generation);
+        }
+
+        return result;
     }
 
     @Override
@@ -292,7 +823,7 @@ public class SqliteManager implements DataManager {
                         FieldData fd = fields[fieldNo];
                         switch (fd.dataType) {
                             case INT:
-                                return mCursor.getString(fieldNo);
+                                return mCursor.getInt(fieldNo);
                             case DOUBLE:
                                 return mCursor.getDouble(fieldNo);
                             case BOOLEAN:
@@ -320,6 +851,47 @@ public class SqliteManager implements DataManager {
                     throw new IndexOutOfBoundsException();
                 }
 
+                private void checkField(int fieldNo) throws DataAccessException {
+                    if (mCursor == null) throw new DataAccessException("Cursor contains no data");
+                    if (fieldNo < 0 || fieldNo >= fields.length) throw new IndexOutOfBoundsException();
+                }
+
+                @Override
+                public boolean isNull(int fieldNo) throws DataAccessException {
+                    checkField(fieldNo);
+                    return mCursor.isNull(fieldNo);
+                }
+
+                @Override
+                public long getLong(int fieldNo) throws DataAccessException {
+                    checkField(fieldNo);
+                    return mCursor.getLong(fieldNo);
+                }
+
+                @Override
+                public int getInt(int fieldNo) throws DataAccessException {
+                    checkField(fieldNo);
+                    return mCursor.getInt(fieldNo);
+                }
+
+                @Override
+                public double getDouble(int fieldNo) throws DataAccessException {
+                    checkField(fieldNo);
+                    return mCursor.getDouble(fieldNo);
+                }
+
+                @Override
+                public String getString(int fieldNo) throws DataAccessException {
+                    checkField(fieldNo);
+                    return mCursor.getString(fieldNo);
+                }
+
+                @Override
+                public void copyStringToBuffer(int fieldNo, CharArrayBuffer buffer) throws DataAccessException {
+                    checkField(fieldNo);
+                    mCursor.copyStringToBuffer(fieldNo, buffer);
+                }
+
                 @Override
                 public boolean eof() {
                     if (mCursor == null) return true;
@@ -360,16 +932,189 @@ public class SqliteManager implements DataManager {
     }
 
     /**
-     * Retrieves entities according to where clause
+     * Retrieves projection objects according to compiled predicate
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
      */
-    public <T> ClosableIterator<T> query (Class<T> clazz, String where, String[] whereArgs) throws DataAccessException {
-        if (clazz == null) {
-            throw new DataAccessException("SQLiteManager: Query: Null class");
-        }
-        if (mDb == null) {
-            throw new DataAccessException("SQLiteManager: Query: Sqlite database is null");
+    public <P> List<P> queryProjection(Class<?> clazz, Class<P> projectionClass, PredicateBuilder.Predicate where, String orderBy) throws DataAccessException, DataIntegrityException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? queryProjection(clazz, projectionClass, where.getWhereClause(), where.getWhereArgs(), orderBy)
+                : queryProjection(clazz, projectionClass, null, null, orderBy);
+    }
+
+    @Override
+    public <P> List<P> queryProjection(Class<?> clazz, Class<P> projectionClass, String where, String[] whereArgs, String orderBy) throws DataAccessException, DataIntegrityException {
+        if (projectionClass == null) {
+            throw new DataAccessException("SQLiteManager: QueryProjection: Null projection class");
         }
-        if (!mDb.isOpen()) {
+        TableQueryBuilder builder = getProjectionBuilder(clazz);
+        return queryProjection(builder.getProjectionMapper(projectionClass), where, whereArgs, orderBy);
+    }
+
+    /**
+     * Retrieves entities with a subset of fields read according to where clause.
+     * Other fields keep default values; children are not read and {@link EntityEvent#onRead()} is not called.
+     * The entities are not cached and should not be written back.
+     *
+     * @param fields storage class field or column names
+     */
+    public <T> List<T> queryPartial(Class<T> clazz, String where, String[] whereArgs, String orderBy, String... fields) throws DataAccessException, DataIntegrityException {
+        TableQueryBuilder builder = getProjectionBuilder(clazz);
+        return queryProjection(ProjectionMapper.forFields(builder.tableData, fields), where, whereArgs, orderBy);
+    }
+
+    private TableQueryBuilder getProjectionBuilder(Class<?> clazz) throws DataAccessException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: QueryProjection: Null class");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: QueryProjection: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
+            throw new DataAccessException("SQLiteManager: QueryProjection: Sqlite database is not open");
+        }
+
+        TableQueryBuilder builder = mSchema.getQueryBuilder(clazz);
+        if (builder == null) {
+            throw new DataAccessException(String.format("SQLiteManager: QueryProjection: class %s is not registered", clazz.getName()));
+        }
+        return builder;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <P> List<P> queryProjection(ProjectionMapper mapper, String where, String[] whereArgs, String orderBy) throws DataAccessException {
+        if (where == null || where.length() == 0) {
+            where = "1";
+        }
+        String query = mapper.selectClause + " WHERE " + where;
+        if (orderBy != null && orderBy.length() > 0) {
+            query += " ORDER BY " + orderBy;
+        }
+
+        List<P> result = new ArrayList<>();
+        Cursor cursor = mDb.rawQuery(query, whereArgs);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    result.add((P) mapper.read(cursor));
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("SQLiteManager: QueryProjection", e);
+            } finally {
+                cursor.close();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a column of all rows matching where clause into an array, without creating entities.
+     * Null values are read as 0. Date columns are read as milliseconds.
+     *
+     * @param field storage class field or column name
+     */
+    public long[] queryLongColumn(Class<?> clazz, String field, String where, String[] whereArgs, String orderBy) throws DataAccessException, DataIntegrityException {
+        return queryLongs(getColumnQuery(clazz, field, where, orderBy), whereArgs);
+    }
+
+    /**
+     * See {@link #queryLongColumn(Class, String, String, String[], String)}
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public long[] queryLongColumn(Class<?> clazz, String field, PredicateBuilder.Predicate where, String orderBy) throws DataAccessException, DataIntegrityException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? queryLongColumn(clazz, field, where.getWhereClause(), where.getWhereArgs(), orderBy)
+                : queryLongColumn(clazz, field, null, null, orderBy);
+    }
+
+    /**
+     * Reads a column of all rows matching where clause into an array, without creating entities.
+     * Null values are read as 0. Boolean columns are read as 1 or 0.
+     *
+     * @param field storage class field or column name
+     */
+    public int[] queryIntColumn(Class<?> clazz, String field, String where, String[] whereArgs, String orderBy) throws DataAccessException, DataIntegrityException {
+        return queryInts(getColumnQuery(clazz, field, where, orderBy), whereArgs);
+    }
+
+    /**
+     * See {@link #queryIntColumn(Class, String, String, String[], String)}
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public int[] queryIntColumn(Class<?> clazz, String field, PredicateBuilder.Predicate where, String orderBy) throws DataAccessException, DataIntegrityException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? queryIntColumn(clazz, field, where.getWhereClause(), where.getWhereArgs(), orderBy)
+                : queryIntColumn(clazz, field, null, null, orderBy);
+    }
+
+    /**
+     * Reads a column of all rows matching where clause into an array, without creating entities.
+     * Null values are read as 0.
+     *
+     * @param field storage class field or column name
+     */
+    public double[] queryDoubleColumn(Class<?> clazz, String field, String where, String[] whereArgs, String orderBy) throws DataAccessException, DataIntegrityException {
+        return queryDoubles(getColumnQuery(clazz, field, where, orderBy), whereArgs);
+    }
+
+    /**
+     * See {@link #queryDoubleColumn(Class, String, String, String[], String)}
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public double[] queryDoubleColumn(Class<?> clazz, String field, PredicateBuilder.Predicate where, String orderBy) throws DataAccessException, DataIntegrityException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? queryDoubleColumn(clazz, field, where.getWhereClause(), where.getWhereArgs(), orderBy)
+                : queryDoubleColumn(clazz, field, null, null, orderBy);
+    }
+
+    private String getColumnQuery(Class<?> clazz, String field, String where, String orderBy) throws DataAccessException, DataIntegrityException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: QueryColumn: Null class");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: QueryColumn: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
+            throw new DataAccessException("SQLiteManager: QueryColumn: Sqlite database is not open");
+        }
+
+        TableData tableData = mSchema.getTableData(clazz);
+        if (tableData == null) {
+            throw new DataAccessException(String.format("SQLiteManager: QueryColumn: class %s is not registered", clazz.getName()));
+        }
+        FieldData fd = tableData.getFieldByName(field);
+        if (fd == null) {
+            throw new DataIntegrityException(String.format("Column %s has not been found in Table %s", field, tableData.tableName));
+        }
+
+        if (where == null || where.length() == 0) {
+            where = "1";
+        }
+        String query = String.format("SELECT %s FROM %s WHERE %s", fd.columnName, tableData.tableName, where);
+        if (orderBy != null && orderBy.length() > 0) {
+            query += " ORDER BY " + orderBy;
+        }
+        return query;
+    }
+
+    /**
+     * Retrieves entities according to where clause
+     */
+    public <T> ClosableIterator<T> query (Class<T> clazz, String where, String[] whereArgs) throws DataAccessException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: Query: Null class");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: Query: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
             throw new DataAccessException("SQLiteManager: Query: Sqlite database is not open");
         }
 
@@ -384,18 +1129,74 @@ public class SqliteManager implements DataManager {
             where = "1";
         }
 
-        return query(builder, where, whereArgs);
+        return query(builder, where, whereArgs, 1, null);
     }
 
-    private <T> ClosableIterator<T> query (TableQueryBuilder builder, String where, final String[] whereArgs) {
+    /**
+     * Retrieves entities according to where clause.
+     * <p>Entities are read in pages of pageSize rows. Children for the whole page
+     * are loaded with one query per child table.
+     */
+    @Override
+    public <T> ClosableIterator<T> query (Class<T> clazz, String where, String[] whereArgs, int pageSize) throws DataAccessException {
+        return query(clazz, where, whereArgs, pageSize, null);
+    }
+
+    /**
+     * Retrieves entities according to where clause, reads the children named by the fetch plan.
+     *
+     * @param plan  children to read, null reads all children. See {@link FetchPlan}
+     */
+    @Override
+    public <T> ClosableIterator<T> query (Class<T> clazz, String where, String[] whereArgs, int pageSize, FetchPlan plan) throws DataAccessException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: Query: Null class");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: Query: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
+            throw new DataAccessException("SQLiteManager: Query: Sqlite database is not open");
+        }
+
+        TableQueryBuilder builder = mSchema.getQueryBuilder(clazz);
+        if (builder == null) {
+            throw new DataAccessException(String.format("SQLiteManager: Query: class %s is not registered", clazz.getName()));
+        }
+
+        if (where == null) {
+            where = "1";
+        } else if (where.length() == 0) {
+            where = "1";
+        }
+
+        if (pageSize < 1) {
+            pageSize = 1;
+        } else if (pageSize > MAX_SQL_VARIABLES) {
+            pageSize = MAX_SQL_VARIABLES;
+        }
+
+        return query(builder, where, whereArgs, pageSize, plan);
+    }
+
+    private <T> ClosableIterator<T> query (TableQueryBuilder builder, String where, final String[] whereArgs, final int pageSize, final FetchPlan plan) {
         final String query = builder.getSelectQuery() + " WHERE " + where;
         final TableData tableData = builder.tableData;
-        final List<ChildTableData> children = mSchema.getChildren(tableData.tableClass);
+        final RowMapper rowMapper = builder.getRowMapper();
+
+        final ChangeTracker tracker = mChangeTracker;
+        final long trackerGeneration = tracker != null ? tracker.getGeneration() : 0;
 
         return new ClosableIterator<T>() {
             Cursor cursor = mDb.rawQuery(query, whereArgs);
+            final Object[] page = new Object[pageSize];
+            final long[] pageIds = new long[pageSize];
+            int pageCount = 0;
+            int pagePos = 0;
+
             @Override
             public boolean hasNext() {
+                if (pagePos < pageCount) return true;
                 if (cursor == null) return false;
 
                 if (cursor.isLast() || cursor.isAfterLast()) {
@@ -410,37 +1211,55 @@ public class SqliteManager implements DataManager {
             @SuppressWarnings("unchecked")
             @Override
             public T next() {
-                if (cursor == null) {
+                if (pagePos >= pageCount) {
+                    readPage();
+                }
+                if (pagePos >= pageCount) {
+                    close();
                     throw new NoSuchElementException();
                 }
 
-                if (cursor.moveToNext()) {
-                    try {
-                        T entity = (T) tableData.tableClass.newInstance();
+                T entity = (T) page[pagePos];
+                page[pagePos] = null;
+                pagePos++;
+                return entity;
+            }
 
-                        populateStorage(entity, tableData.fields, cursor);
+            private void readPage() {
+                if (cursor == null) {
+                    throw new NoSuchElementException();
+                }
+
+                pageCount = 0;
+                pagePos = 0;
+                try {
+                    while (pageCount < pageSize && cursor.moveToNext()) {
+                        Object entity = tableData.tableClass.newInstance();
+                        rowMapper.read(cursor, entity);
+                        if (tracker != null) {
+                            trackRow(tracker, rowMapper, entity, trackerGeneration);
+                        }
+                        pageIds[pageCount] = getLongValue(tableData.primaryKey.valueAccessor, entity);
+                        page[pageCount] = entity;
+                        pageCount++;
+                    }
 
-                        long id = (Long) tableData.primaryKey.valueAccessor.getValue(entity);
+                    if (pageCount > 0) {
+                        readChildren(Arrays.copyOf(pageIds, pageCount), tableData.tableClass, Arrays.copyOf(page, pageCount), plan);
 
-                        if (children != null) {
-                            Object[] parents = new Object[] {entity};
-                            for (ChildTableData child: children) {
-                                readChildren(id, tableData.tableClass, parents, child);
+                        for (int i = 0; i < pageCount; ++i) {
+                            if (EntityEvent.class.isAssignableFrom(page[i].getClass())) {
+                                ((EntityEvent) page[i]).onRead();
                             }
                         }
-
-                        if (EntityEvent.class.isAssignableFrom(entity.getClass())) {
-                            ((EntityEvent) entity).onRead();
+                        if (plan != null && plan.isResolveLinks()) {
+                            resolveLinks(Arrays.copyOf(page, pageCount), plan);
                         }
-
-                        return entity;
-
-                    } catch (Exception e) {
-                        Log.e(TAG, "SqlManager: query", e);
-                        throw new NoSuchElementException();
                     }
-                } else {
-                    close();
+                } catch (Exception e) {
+                    Log.e(TAG, "SqlManager: query", e);
+                    Arrays.fill(page, null);
+                    pageCount = 0;
                     throw new NoSuchElementException();
                 }
             }
@@ -485,126 +1304,315 @@ public class SqliteManager implements DataManager {
                 return false;
             }
         }
-		
+
+        EntityCache cache = mEntityCache;
+        if (cache != null) {
+            cache.beginUpdate();
+        }
+        QueryCache queryCache = mQueryCache;
+        beginQueryCacheUpdate(queryCache);
+        ChangeTracker tracker = mChangeTracker;
+        beginChangeTracking(tracker);
+        boolean success = false;
 		mDb.beginTransactionNonExclusive();
 		try {
 
-			long id = write(entity, 0, true);
-
-            if (EntityKeyword.class.isAssignableFrom(entity.getClass())) {
-                String keywords = ((EntityKeyword) entity).getKeywords();
-                if (keywords == null) {
-                    keywords = "";
-                }
-
-                TableData data = mSchema.getTableData(entity.getClass());
-                if (data != null) {
-                    String query = String.format("REPLACE INTO %s_KW (docid, content) VALUES (?, ?);", data.tableName);
-                    try {
-                        mDb.execSQL(query, new String[] {Long.toString(id), keywords.toLowerCase()});
-                    }
-                    catch (Exception e) {
-                        Log.e(TAG, "Update Keywords", e);
-                    }
-                }
-            }
+			long id = write(entity, 0, 0, true, null);
+            writeKeywords(entity, id, null);
 
 			mDb.setTransactionSuccessful();
+            success = true;
             return true;
 		} catch (Exception e) {
 			throw new DataAccessException("SQLiteManager: Write: Internal exception", e);
 		} finally {
 			mDb.endTransaction();
+            if (cache != null) {
+                evictAncestors(cache, entity.getClass());
+                cache.endUpdate();
+            }
+            endQueryCacheUpdate(queryCache);
+            endChangeTracking(tracker, success);
 		}
 	}
 
     /**
-	 * Deletes an entity
-	 */
-	@Override
-    public void delete(Class<?> clazz, long id) throws DataAccessException {
-        if (clazz == null) {
-            throw new DataAccessException("SQLiteManager: Read: class is null");
+     * Writes (insert or update) a collection of entities in one transaction.
+     * Insert and update statements are compiled once per table for the whole batch.
+     */
+    @Override
+    public <T> int writeAll(Collection<T> entities) throws DataAccessException {
+        if (entities == null) {
+            throw new DataAccessException("SQLiteManager: WriteAll: Null collection");
         }
         if (mDb == null) {
-            throw new DataAccessException("SQLiteManager: Read: Sqlite database is null");
+            throw new DataAccessException("SQLiteManager: WriteAll: Sqlite database is null");
         }
         if (!mDb.isOpen()) {
-            throw new DataAccessException("SQLiteManager: Read: Sqlite database is not open");
+            throw new DataAccessException("SQLiteManager: WriteAll: Sqlite database is not open");
         }
         if (mDb.isReadOnly()) {
-            throw new DataAccessException("SQLiteManager: Read: Sqlite database is read-only");
+            throw new DataAccessException("SQLiteManager: WriteAll: Sqlite database is read-only");
         }
 
+        int written = 0;
+        Map<Integer, SQLiteStatement> batchStmts = new HashMap<>();
+        Set<Class<?>> writtenClasses = new HashSet<>();
+        EntityCache cache = mEntityCache;
+        if (cache != null) {
+            cache.beginUpdate();
+        }
+        QueryCache queryCache = mQueryCache;
+        beginQueryCacheUpdate(queryCache);
+        ChangeTracker tracker = mChangeTracker;
+        beginChangeTracking(tracker);
+        boolean success = false;
         mDb.beginTransactionNonExclusive();
         try {
-            deleteChildren(id, clazz, clazz);
+            for (T entity: entities) {
+                if (entity == null) continue;
 
-            List<TableLinkData> links = mSchema.getDetailLinks(clazz);
-            if (links != null) {
-                for (TableLinkData link: links) {
-                    if (link.whenBroken == WhenLinkBroken.UNLINK) {
-                        TableData linkData = mSchema.getTableData(link.detailClass);
-                        if (linkData != null) {
-                            ContentValues values = mValues.poll();
-                            if (values == null) {
-                                values = new ContentValues();
-                            } else {
-                                values.clear();
-                            }
-                            values.put(link.detailField.columnName, 0L);
-                            mDb.update(linkData.tableName, values, link.detailField.columnName + " = ?", new String[] {Long.toString(id)});
-                            mValues.add(values);
-                        }
+                if (EntityEvent.class.isAssignableFrom(entity.getClass())) {
+                    if (!((EntityEvent) entity).onWrite()) {
+                        continue;
                     }
                 }
+
+                long id = write(entity, 0, 0, true, batchStmts);
+                writeKeywords(entity, id, batchStmts);
+                writtenClasses.add(entity.getClass());
+                ++written;
             }
 
-            if (EntityKeyword.class.isAssignableFrom(clazz)) {
-                TableData data = mSchema.getTableData(clazz);
-                if (data != null) {
-                    String query = String.format("DELETE FROM %s_KW WHERE docid = ?", data.tableName);
-                    try {
-                        mDb.execSQL(query, new String[] {Long.toString(id)});
+            mDb.setTransactionSuccessful();
+            success = true;
+            return written;
+        } catch (Exception e) {
+            throw new DataAccessException("SQLiteManager: WriteAll: Internal exception", e);
+        } finally {
+            for (SQLiteStatement stmt: batchStmts.values()) {
+                stmt.close();
+            }
+            batchStmts.clear();
+            mDb.endTransaction();
+            if (cache != null) {
+                for (Class<?> clazz: writtenClasses) {
+                    evictAncestors(cache, clazz);
+                }
+                cache.endUpdate();
+            }
+            endQueryCacheUpdate(queryCache);
+            endChangeTracking(tracker, success);
+        }
+    }
+
+    private void writeKeywords(Object entity, long id, Map<Integer, SQLiteStatement> batchStmts) {
+        if (!EntityKeyword.class.isAssignableFrom(entity.getClass())) return;
+
+        String keywords = ((EntityKeyword) entity).getKeywords();
+        if (keywords == null) {
+            keywords = "";
+        }
+
+        TableData data = mSchema.getTableData(entity.getClass());
+        if (data != null) {
+            String query = String.format("REPLACE INTO %s_KW (docid, content) VALUES (?, ?);", data.tableName);
+            try {
+                if (batchStmts != null) {
+                    int stmtKey = data.tableNo + 3000;
+                    SQLiteStatement stmt = batchStmts.get(stmtKey);
+                    if (stmt == null) {
+                        stmt = mDb.compileStatement(query);
+                        batchStmts.put(stmtKey, stmt);
                     }
-                    catch (Exception e) {
-                        Log.e(TAG, "Delete Keywords", e);
+                    stmt.bindLong(1, id);
+                    stmt.bindString(2, keywords.toLowerCase());
+                    stmt.execute();
+                } else {
+                    SQLiteStatement stmt = acquireStatement(query);
+                    try {
+                        stmt.bindLong(1, id);
+                        stmt.bindString(2, keywords.toLowerCase());
+                        stmt.execute();
+                    } finally {
+                        releaseStatement(query, stmt);
                     }
                 }
             }
+            catch (Exception e) {
+                Log.e(TAG, "Update Keywords", e);
+            }
+        }
+    }
+
+    /**
+	 * Deletes an entity
+	 */
+	@Override
+    public void delete(Class<?> clazz, long id) throws DataAccessException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: Read: class is null");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: Read: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
+            throw new DataAccessException("SQLiteManager: Read: Sqlite database is not open");
+        }
+        if (mDb.isReadOnly()) {
+            throw new DataAccessException("SQLiteManager: Read: Sqlite database is read-only");
+        }
+
+        EntityCache cache = mEntityCache;
+        if (cache != null) {
+            cache.beginUpdate();
+        }
+        QueryCache queryCache = mQueryCache;
+        beginQueryCacheUpdate(queryCache);
+        ChangeTracker tracker = mChangeTracker;
+        beginChangeTracking(tracker);
+        boolean success = false;
+        mDb.beginTransactionNonExclusive();
+        try {
+            deleteRows(clazz, new long[] {id});
 
             mDb.setTransactionSuccessful();
+            success = true;
         } catch (Exception e) {
             throw new DataAccessException("SQLiteManager: Delete: Internal exception", e);
         } finally {
             mDb.endTransaction();
+            if (cache != null) {
+                cache.evict(clazz, id);
+                evictAncestors(cache, clazz);
+                cache.endUpdate();
+            }
+            endQueryCacheUpdate(queryCache);
+            if (tracker != null) {
+                tracker.evict(clazz, id);
+            }
+            endChangeTracking(tracker, success);
         }
     }
 
-    private void deleteChildren(long id, Class<?> idClazz, Class<?> toDelete) throws DataIntegrityException {
-        List<ChildTableData> children = mSchema.getChildren(toDelete);
-        if (children != null) {
-            for (ChildTableData child: children) {
-                for (Class<?> childClass: child.children) {
-                    deleteChildren(id, idClazz, childClass);
+    /**
+     * Deletes entities with children by IDs.
+     * <p>IDs of every level of the aggregate are collected into temporary tables,
+     * then each table is cleared with one statement.
+     */
+    @Override
+    public int delete(Class<?> clazz, long[] ids) throws DataAccessException {
+        if (ids == null) {
+            throw new DataAccessException("SQLiteManager: Delete: ids is null");
+        }
+        return deleteAll(clazz, ids, null, null);
+    }
+
+    /**
+     * Deletes entities with children that match where clause.
+     * See {@link #delete(Class, long[])}
+     */
+    @Override
+    public int deleteWhere(Class<?> clazz, String where, String[] whereArgs) throws DataAccessException {
+        if (where == null || where.length() == 0) {
+            where = "1";
+        }
+        return deleteAll(clazz, null, where, whereArgs);
+    }
+
+    /**
+     * Deletes entities with children that match compiled predicate
+     *
+     * @param where compiled predicate. See {@link PredicateBuilder.WhereClause#compile()}
+     */
+    public int deleteWhere(Class<?> clazz, PredicateBuilder.Predicate where) throws DataAccessException {
+        checkPredicate(clazz, where);
+        return where != null
+                ? deleteWhere(clazz, where.getWhereClause(), where.getWhereArgs())
+                : deleteWhere(clazz, null, null);
+    }
+
+    private int deleteAll(Class<?> clazz, long[] ids, String where, String[] whereArgs) throws DataAccessException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: Delete: class is null");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: Delete: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
+            throw new DataAccessException("SQLiteManager: Delete: Sqlite database is not open");
+        }
+        if (mDb.isReadOnly()) {
+            throw new DataAccessException("SQLiteManager: Delete: Sqlite database is read-only");
+        }
+        TableData tableData = mSchema.getTableData(clazz);
+        if (tableData == null) {
+            throw new DataAccessException(String.format("SQLiteManager: Delete: class %s is not registered", clazz.getName()));
+        }
+
+        EntityCache cache = mEntityCache;
+        if (cache != null) {
+            cache.beginUpdate();
+        }
+        QueryCache queryCache = mQueryCache;
+        beginQueryCacheUpdate(queryCache);
+        ChangeTracker tracker = mChangeTracker;
+        beginChangeTracking(tracker);
+        boolean success = false;
+        mDb.beginTransactionNonExclusive();
+        try {
+            String idTable = prepareIdTable(tableData);
+            if (ids != null) {
+                for (int start = 0; start < ids.length; start += MAX_SQL_VARIABLES) {
+                    long[] chunk = Arrays.copyOfRange(ids, start, Math.min(ids.length, start + MAX_SQL_VARIABLES));
+                    String[] args = TableQueryBuilder.getIdParameters(chunk);
+                    mDb.execSQL(String.format("INSERT OR IGNORE INTO %s (id) SELECT %s FROM %s WHERE %s IN (%s)",
+                            idTable, tableData.primaryKey.columnName, tableData.tableName, tableData.primaryKey.columnName,
+                            TableQueryBuilder.getParameterList(args.length)), args);
                 }
+            } else {
+                mDb.execSQL(String.format("INSERT OR IGNORE INTO %s (id) SELECT %s FROM %s WHERE %s",
+                        idTable, tableData.primaryKey.columnName, tableData.tableName, where),
+                        whereArgs != null ? whereArgs : new String[0]);
             }
-        }
 
-        if (idClazz != toDelete) {
-            TableQueryBuilder.LinkedQueryBuilder builder = mSchema.getLinkedQueryBuilder(toDelete, idClazz);
-            if (builder == null) {
-                throw new DataIntegrityException(
-                        String.format("SQLiteManager: deleteChildren: classes %s and %s are unrelated.", idClazz.getName(), toDelete.getName()));
+            int deleted;
+            SQLiteStatement stmt = mDb.compileStatement(String.format("SELECT COUNT(*) FROM %s", idTable));
+            try {
+                deleted = (int) stmt.simpleQueryForLong();
+            } finally {
+                stmt.close();
             }
-            mDb.delete(builder.getTableData().tableName, builder.getDeleteByIdWhereClause(), new String[] {Long.toString(id)});
-        } else {
-            TableQueryBuilder builder = mSchema.getQueryBuilder(idClazz);
-            if (builder == null) {
-                throw new DataIntegrityException(
-                        String.format("SQLiteManager: deleteChildren: classes %s is not registered.", idClazz.getName()));
+
+            if (deleted > 0) {
+                String rootSelect = mSchema.getParentClass(clazz) == null ? String.format("SELECT id FROM %s", idTable) : null;
+                deleteMarkedRows(clazz, clazz, rootSelect);
+            }
+
+            mDb.setTransactionSuccessful();
+            success = true;
+            return deleted;
+        } catch (Exception e) {
+            throw new DataAccessException("SQLiteManager: Delete: Internal exception", e);
+        } finally {
+            mDb.endTransaction();
+            if (cache != null) {
+                evictAncestors(cache, clazz);
+                cache.endUpdate();
             }
-            mDb.delete(builder.tableData.tableName, builder.getDeleteByIdWhereClause(), new String[] {Long.toString(id)});
+            endQueryCacheUpdate(queryCache);
+            endChangeTracking(tracker, success);
+        }
+    }
+
+    /**
+     * Evicts cached aggregates the class can be a child of
+     */
+    private void evictAncestors(EntityCache cache, Class<?> clazz) {
+        Class<?> parent = mSchema.getParentClass(clazz);
+        while (parent != null) {
+            cache.evictClass(parent);
+            parent = mSchema.getParentClass(parent);
         }
     }
 
@@ -668,10 +1676,26 @@ public class SqliteManager implements DataManager {
         String query = String.format(Locale.getDefault(),
                 "SELECT docid, matchinfo(%s, 'pcx') FROM %<s WHERE content MATCH :1",
                 String.format("%s_KW", tableData.tableName));
-        Cursor cursor = mDb.rawQuery(query, new String[]{ criteria.toLowerCase() });
+        String[] queryArgs = new String[]{ criteria.toLowerCase() };
+
+        QueryCache queryCache = mQueryCache;
+        String key = null;
+        long version = 0;
+        long generation = 0;
+        if (queryCache != null) {
+            key = QueryCache.getKey("kw", query, queryArgs);
+            long[] cached = queryCache.get(tableData.tableName, key);
+            if (cached != null) {
+                return cached;
+            }
+            generation = queryCache.getGeneration();
+            version = queryCache.getTableVersion(tableData.tableName);
+        }
+
+        Cursor cursor = mDb.rawQuery(query, queryArgs);
         if (cursor != null) {
             try {
-                if (cursor.moveToNext()) {
+                while (cursor.moveToNext()) {
                     long id = cursor.getLong(0);
                     byte[] matchInfo = cursor.getBlob(1);
                     if (matchInfo != null) {
@@ -699,87 +1723,448 @@ public class SqliteManager implements DataManager {
                     }
                 }
             } finally {
-                cursor.close();
+                cursor.close();
+            }
+        }
+
+        if (keywordRecords.size() > 0) {
+            if (keywordRecords.size() > 1) {
+                Collections.sort(keywordRecords, sKeywordWeightComparator);
+            }
+            int records = keywordRecords.size();
+            if (records > 1024) {
+                records = 1024;
+            }
+            long[] ids = new long[records];
+            for (int i = 0; i < records; ++i) {
+                ids[i] = keywordRecords.get(i).id;
+            }
+            if (queryCache != null) {
+                queryCache.put(tableData.tableName, key, ids, version, generation);
+            }
+            return ids;
+        }
+
+        if (queryCache != null) {
+            queryCache.put(tableData.tableName, key, new long[0], version, generation);
+        }
+        return new long[0];
+    }
+
+    /**
+     * Reads an entity by id
+     * @throws DataAccessException
+     */
+    @Override
+    public <T> T read(Class<T> clazz, long id) throws DataAccessException {
+        EntityCache cache = mEntityCache;
+        if (cache != null && clazz != null) {
+            Object cached = cache.get(clazz, id);
+            if (cached != null) {
+                return clazz.cast(cached);
+            }
+            long generation = cache.getGeneration();
+            T entity = readEntity(clazz, id, null);
+            if (entity != null) {
+                cache.put(clazz, id, entity, generation);
+            }
+            return entity;
+        }
+        return readEntity(clazz, id, null);
+    }
+
+    /**
+     * Reads an entity by id with the children named by the fetch plan.
+     * <p>Entities read with a partial plan are not put into {@link EntityCache}.
+     * A cached entity is returned with all its children.
+     *
+     * @param plan  children to read, null reads all children. See {@link FetchPlan}
+     * @throws DataAccessException
+     */
+    @Override
+    public <T> T read(Class<T> clazz, long id, FetchPlan plan) throws DataAccessException {
+        T entity;
+        if (plan == null || plan.isAll()) {
+            entity = read(clazz, id);
+        } else {
+            EntityCache cache = mEntityCache;
+            Object cached = cache != null && clazz != null ? cache.get(clazz, id) : null;
+            entity = cached != null ? clazz.cast(cached) : readEntity(clazz, id, plan);
+        }
+        if (entity != null && plan != null && plan.isResolveLinks()) {
+            resolveLinks(new Object[] {entity}, plan);
+        }
+        return entity;
+    }
+
+    private <T> T readEntity(Class<T> clazz, long id, FetchPlan plan) throws DataAccessException {
+		if (clazz == null) {
+			throw new DataAccessException("SQLiteManager: Read: class is null");
+		}
+		if (mDb == null) {
+			throw new DataAccessException("SQLiteManager: Read: Sqlite database is null");
+		}
+		if (!mDb.isOpen()) {
+			throw new DataAccessException("SQLiteManager: Read: Sqlite database is not open");
+		}
+
+		TableQueryBuilder builder = mSchema.getQueryBuilder(clazz);
+		if (builder == null) {
+			throw new DataAccessException(String.format("SQLiteManager: Read: class %s is not registered", clazz.getName()));
+		}
+
+		T entity = null;
+		ChangeTracker tracker = mChangeTracker;
+		long trackerGeneration = tracker != null ? tracker.getGeneration() : 0;
+		try {
+			Cursor c = mDb.rawQuery(builder.getSelectByIdQuery(), new String[]{Long.toString(id)});
+			if (c != null) {
+				try {
+					if (c.moveToNext()) {
+						entity = clazz.newInstance();
+						builder.getRowMapper().read(c, entity);
+						if (tracker != null) {
+							trackRow(tracker, builder.getRowMapper(), entity, trackerGeneration);
+						}
+                        if (EntityEvent.class.isAssignableFrom(entity.getClass())) {
+                            ((EntityEvent) entity).onRead();
+                        }
+
+					} 
+				} finally {
+					c.close();
+				}
+			}
+            if (entity != null) {
+                readChildren(new long[] {id}, clazz, new Object[] {entity}, plan);
+            }
+        } catch (Exception e) {
+			throw new DataAccessException("SQLiteManager: Read: Internal exception", e);
+		}
+
+		return entity;
+	}
+
+    /**
+     * Reads entities with children by IDs.
+     * <p>Root rows are selected with one query, every child table is read with
+     * one query for all roots.
+     *
+     * @return entities in order of IDs. Missing IDs are skipped.
+     * @throws DataAccessException
+     */
+    @Override
+    public <T> List<T> readAll(Class<T> clazz, long[] ids) throws DataAccessException {
+        return readAll(clazz, ids, null);
+    }
+
+    /**
+     * Reads entities by IDs with the children named by the fetch plan.
+     * <p>Entities read with a partial plan are not put into {@link EntityCache}.
+     * Cached entities are returned with all their children.
+     *
+     * @param plan  children to read, null reads all children. See {@link FetchPlan}
+     * @return entities in order of IDs. Missing IDs are skipped.
+     * @throws DataAccessException
+     */
+    @Override
+    public <T> List<T> readAll(Class<T> clazz, long[] ids, FetchPlan plan) throws DataAccessException {
+        if (clazz == null) {
+            throw new DataAccessException("SQLiteManager: ReadAll: class is null");
+        }
+        if (ids == null) {
+            throw new DataAccessException("SQLiteManager: ReadAll: ids is null");
+        }
+        if (mDb == null) {
+            throw new DataAccessException("SQLiteManager: ReadAll: Sqlite database is null");
+        }
+        if (!mDb.isOpen()) {
+            throw new DataAccessException("SQLiteManager: ReadAll: Sqlite database is not open");
+        }
+
+        TableQueryBuilder builder = mSchema.getQueryBuilder(clazz);
+        if (builder == null) {
+            throw new DataAccessException(String.format("SQLiteManager: ReadAll: class %s is not registered", clazz.getName()));
+        }
+
+        List<T> result = new ArrayList<>(ids.length);
+        if (ids.length == 0) {
+            return result;
+        }
+
+        Map<Long, T> entities = new HashMap<>(ids.length);
+        long[] toRead = ids;
+        EntityCache cache = mEntityCache;
+        long generation = 0;
+        if (cache != null) {
+            generation = cache.getGeneration();
+            toRead = new long[ids.length];
+            int pos = 0;
+            for (long id: ids) {
+                Object cached = cache.get(clazz, id);
+                if (cached != null) {
+                    entities.put(id, clazz.cast(cached));
+                } else {
+                    toRead[pos] = id;
+                    pos++;
+                }
+            }
+            toRead = Arrays.copyOf(toRead, pos);
+        }
+
+        Map<Long, T> read = cache != null ? new HashMap<Long, T>(toRead.length) : entities;
+        try {
+            for (int start = 0; start < toRead.length; start += MAX_SQL_VARIABLES) {
+                int end = Math.min(toRead.length, start + MAX_SQL_VARIABLES);
+                readAll(builder, clazz, Arrays.copyOfRange(toRead, start, end), read, plan);
+            }
+        } catch (Exception e) {
+            throw new DataAccessException("SQLiteManager: ReadAll: Internal exception", e);
+        }
+
+        if (cache != null) {
+            if (plan == null || plan.isAll()) {
+                for (Map.Entry<Long, T> entry: read.entrySet()) {
+                    cache.put(clazz, entry.getKey(), entry.getValue(), generation);
+                }
+            }
+            entities.putAll(read);
+        }
+
+        for (long id: ids) {
+            T entity = entities.get(id);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        if (plan != null && plan.isResolveLinks() && !result.isEmpty()) {
+            resolveLinks(result.toArray(), plan);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the entities linked by the details through {@link org.db.gora.schema.SqlLinkedEntity} columns.
+     * Distinct link IDs of all details are read with {@link #readAll(Class, long[])}, one IN query per
+     * {@link #MAX_SQL_VARIABLES} IDs, instead of one {@link #read(Class, long)} per detail.
+     *
+     * @param details       entities with link columns to the master class
+     * @param masterClass   linked entity class
+     * @return linked entities by ID
+     */
+    public <M> Map<Long, M> readLinked(Collection<?> details, Class<M> masterClass) throws DataAccessException {
+        if (masterClass == null) {
+            throw new DataAccessException("SQLiteManager: ReadLinked: class is null");
+        }
+        List<TableLinkData> links = mSchema.getDetailLinks(masterClass);
+        if (links == null) {
+            links = Collections.emptyList();
+        }
+        return readLinked(details, masterClass, links);
+    }
+
+    /**
+     * Sets the fields named by {@link org.db.gora.schema.SqlLinkedEntity#fetchInto()} of the details
+     * to the linked entities. Linked entities are read with one query per entity class,
+     * see {@link #readLinked(Collection, Class)}. The field is set to null if the link is broken.
+     *
+     * @param details entities of any registered classes
+     */
+    public void resolveLinks(Collection<?> details) throws DataAccessException {
+        if (details == null || details.isEmpty()) return;
+
+        Map<Class<?>, List<TableLinkData>> linksByMaster = new HashMap<>();
+        Set<Class<?>> detailClasses = new HashSet<>();
+        for (Object detail: details) {
+            if (detail == null || !detailClasses.add(detail.getClass())) continue;
+            for (TableLinkData link: mSchema.getMasterLinks(detail.getClass())) {
+                if (link.entityAccessor == null) continue;
+                List<TableLinkData> links = linksByMaster.get(link.masterClass);
+                if (links == null) {
+                    links = new ArrayList<>();
+                    linksByMaster.put(link.masterClass, links);
+                }
+                links.add(link);
+            }
+        }
+
+        for (Map.Entry<Class<?>, List<TableLinkData>> entry: linksByMaster.entrySet()) {
+            List<TableLinkData> links = entry.getValue();
+            Map<Long, ?> masters = readLinked(details, entry.getKey(), links);
+            try {
+                for (Object detail: details) {
+                    if (detail == null) continue;
+                    for (TableLinkData link: links) {
+                        if (link.detailClass == detail.getClass()) {
+                            long id = getLongValue(link.detailField.valueAccessor, detail);
+                            link.entityAccessor.setValue(id != 0 ? masters.get(id) : null, detail);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                throw new DataAccessException("SQLiteManager: ResolveLinks: Internal exception", e);
+            }
+        }
+    }
+
+    /**
+     * Resolves links of the entities and their children included in the fetch plan
+     */
+    private void resolveLinks(Object[] entities, FetchPlan plan) throws DataAccessException {
+        List<Object> details = new ArrayList<>();
+        try {
+            collectEntities(entities, plan, details);
+        } catch (Exception e) {
+            throw new DataAccessException("SQLiteManager: ResolveLinks: Internal exception", e);
+        }
+        resolveLinks(details);
+    }
+
+    private void collectEntities(Object[] entities, FetchPlan plan, List<Object> result) throws Exception {
+        for (Object entity: entities) {
+            if (entity == null) continue;
+            result.add(entity);
+
+            List<ChildTableData> children = mSchema.getChildren(entity.getClass());
+            if (children == null) continue;
+            for (ChildTableData child: children) {
+                FetchPlan childPlan = plan.getChild(child.fieldName);
+                if (childPlan == null) continue;
+
+                Object value = child.valueAccessor.getChildren(entity);
+                if (value instanceof Collection) {
+                    collectEntities(((Collection<?>) value).toArray(), childPlan, result);
+                } else if (value != null) {
+                    collectEntities(new Object[] {value}, childPlan, result);
+                }
+            }
+        }
+    }
+
+    private <M> Map<Long, M> readLinked(Collection<?> details, Class<M> masterClass, List<TableLinkData> links) throws DataAccessException {
+        Map<Long, M> result = new HashMap<>();
+        if (details == null || details.isEmpty() || links.isEmpty()) {
+            return result;
+        }
+        TableData masterData = mSchema.getTableData(masterClass);
+        if (masterData == null) {
+            throw new DataAccessException(String.format("SQLiteManager: ReadLinked: class %s is not registered", masterClass.getName()));
+        }
+
+        long[] ids = new long[details.size()];
+        int pos = 0;
+        try {
+            for (Object detail: details) {
+                if (detail == null) continue;
+                for (TableLinkData link: links) {
+                    if (link.detailClass != detail.getClass()) continue;
+                    long id = getLongValue(link.detailField.valueAccessor, detail);
+                    if (id == 0) continue;
+                    if (pos >= ids.length) {
+                        ids = Arrays.copyOf(ids, ids.length * 2);
+                    }
+                    ids[pos] = id;
+                    pos++;
+                }
+            }
+        } catch (Exception e) {
+            throw new DataAccessException("SQLiteManager: ReadLinked: Internal exception", e);
+        }
+        if (pos == 0) {
+            return result;
+        }
+
+        ids = Arrays.copyOf(ids, pos);
+        Arrays.sort(ids);
+        int count = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[count] = ids[i];
+                count++;
+            }
+        }
+
+        try {
+            for (M master: readAll(masterClass, Arrays.copyOf(ids, count))) {
+                result.put(getLongValue(masterData.primaryKey.valueAccessor, master), master);
+            }
+        } catch (DataAccessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new DataAccessException("SQLiteManager: ReadLinked: Internal exception", e);
+        }
+        return result;
+    }
+
+    private <T> void readAll(TableQueryBuilder builder, Class<T> clazz, long[] ids, Map<Long, T> entities, FetchPlan plan) throws Exception {
+        String[] args = TableQueryBuilder.getIdParameters(ids);
+
+        Object[] rows = new Object[ids.length];
+        long[] rowIds = new long[ids.length];
+        int pos = 0;
+
+        RowMapper rowMapper = builder.getRowMapper();
+        ChangeTracker tracker = mChangeTracker;
+        long trackerGeneration = tracker != null ? tracker.getGeneration() : 0;
+        Cursor c = mDb.rawQuery(builder.getSelectByIdsQuery(args.length), args);
+        if (c != null) {
+            try {
+                while (c.moveToNext() && pos < rows.length) {
+                    T entity = clazz.newInstance();
+                    rowMapper.read(c, entity);
+                    if (tracker != null) {
+                        trackRow(tracker, rowMapper, entity, trackerGeneration);
+                    }
+                    rowIds[pos] = getLongValue(builder.tableData.primaryKey.valueAccessor, entity);
+                    rows[pos] = entity;
+                    entities.put(rowIds[pos], entity);
+                    pos++;
+                }
+            } finally {
+                c.close();
             }
         }
 
-        if (keywordRecords.size() > 0) {
-            if (keywordRecords.size() > 1) {
-                Collections.sort(keywordRecords, sKeywordWeightComparator);
-            }
-            int records = keywordRecords.size();
-            if (records > 1024) {
-                records = 1024;
-            }
-            long[] ids = new long[records];
-            for (int i = 0; i < records; ++i) {
-                ids[i] = keywordRecords.get(i).id;
+        if (pos > 0) {
+            rows = Arrays.copyOf(rows, pos);
+            readChildren(Arrays.copyOf(rowIds, pos), clazz, rows, plan);
+            for (Object entity: rows) {
+                if (EntityEvent.class.isAssignableFrom(entity.getClass())) {
+                    ((EntityEvent) entity).onRead();
+                }
             }
-            return ids;
         }
-
-        return new long[0];
     }
 
     /**
-     * Reads an entity by id
-     * @throws DataAccessException
+     * Reads children of all levels for the parent entities
+     *
+     * @param ids       IDs of idClazz records, the parents are descendants of
+     * @param idClazz   Root class
+     * @param parents   Parent entities. The array gets sorted by primary key.
+     * @param plan      Children to read, null reads all children
      */
-    @Override
-    public <T> T read(Class<T> clazz, long id) throws DataAccessException {
-        return read(clazz, id, false);
-    }
-
-    private <T> T read(Class<T> clazz, long id, boolean skipChildren) throws DataAccessException {
-		if (clazz == null) {
-			throw new DataAccessException("SQLiteManager: Read: class is null");
-		}
-		if (mDb == null) {
-			throw new DataAccessException("SQLiteManager: Read: Sqlite database is null");
-		}
-		if (!mDb.isOpen()) {
-			throw new DataAccessException("SQLiteManager: Read: Sqlite database is not open");
-		}
-
-		TableQueryBuilder builder = mSchema.getQueryBuilder(clazz);
-		if (builder == null) {
-			throw new DataAccessException(String.format("SQLiteManager: Read: class %s is not registered", clazz.getName()));
-		}
-
-		T entity = null;
-		try {
-			Cursor c = mDb.rawQuery(builder.getSelectByIdQuery(), new String[]{Long.toString(id)});
-			if (c != null) {
-				try {
-					if (c.moveToNext()) {
-						entity = clazz.newInstance();
-						populateStorage(entity, builder.tableData.fields, c);
-                        if (EntityEvent.class.isAssignableFrom(entity.getClass())) {
-                            ((EntityEvent) entity).onRead();
-                        }
-
-					} 
-				} finally {
-					c.close();
-				}
-			}
-            if (entity != null && !skipChildren) {
-                List<ChildTableData> children = mSchema.getChildren(clazz);
-                if (children != null) {
-                    Object[] parents = new Object[] {entity};
-                    for (ChildTableData child: children) {
-                        readChildren(id, clazz, parents, child);
-                    }
+    void readChildren(long[] ids, Class<?> idClazz, Object[] parents, FetchPlan plan) throws Exception {
+        if (plan != null && !plan.isAll()) {
+            PartialEntities partialEntities = mPartialEntities;
+            for (Object parent: parents) {
+                partialEntities.put(parent, plan);
+            }
+        }
+        List<ChildTableData> children = mSchema.getChildren(parents[0].getClass());
+        if (children != null) {
+            for (ChildTableData child: children) {
+                FetchPlan childPlan = plan != null ? plan.getChild(child.fieldName) : null;
+                if (plan == null || childPlan != null) {
+                    readChildren(ids, idClazz, parents, child, childPlan);
                 }
             }
-        } catch (Exception e) {
-			throw new DataAccessException("SQLiteManager: Read: Internal exception", e);
-		}
+        }
+    }
 
-		return entity;
-	}
+    void readChildren(long[] ids, Class<?> idClazz, Object[] parents, ChildTableData childData, FetchPlan plan) throws Exception {
+        String[] args = TableQueryBuilder.getIdParameters(ids);
 
-    void readChildren(long id, Class<?> idClazz, Object[] parents, ChildTableData childData) throws Exception {
         for (Class<?> childClazz: childData.children) {
             TableQueryBuilder.LinkedQueryBuilder builder = mSchema.getLinkedQueryBuilder(childClazz, idClazz);
             if (builder == null) {
@@ -790,15 +2175,21 @@ public class SqliteManager implements DataManager {
             Object[] rows = new Object[256];
             int pos = 0;
 
-            Cursor cc = mDb.rawQuery(builder.getSelectByIdQuery(), new String[]{Long.toString(id)});
+            RowMapper rowMapper = builder.getRowMapper();
+            ChangeTracker tracker = mChangeTracker;
+            long trackerGeneration = tracker != null ? tracker.getGeneration() : 0;
+            Cursor cc = mDb.rawQuery(builder.getSelectByIdsQuery(args.length), args);
             if (cc != null) {
                 try {
                     while (cc.moveToNext()) {
-                        if (pos > rows.length) {
+                        if (pos >= rows.length) {
                             rows = Arrays.copyOf(rows, rows.length + 256);
                         }
                         rows[pos] = builder.getTableData().tableClass.newInstance();
-                        populateStorage(rows[pos], builder.getTableData().fields, cc);
+                        rowMapper.read(cc, rows[pos]);
+                        if (tracker != null) {
+                            trackRow(tracker, rowMapper, rows[pos], trackerGeneration);
+                        }
                         pos++;
                     }
                 } finally {
@@ -816,9 +2207,9 @@ public class SqliteManager implements DataManager {
 
                 int parentPos = 0;
                 int childPos = 0;
-                long parentId = (Long) parentAccessor.getValue(parents[parentPos]);
+                long parentId = getLongValue(parentAccessor, parents[parentPos]);
                 while (childPos < rows.length) {
-                    long childId = (Long) childAccessor.getValue(rows[childPos]);
+                    long childId = getLongValue(childAccessor, rows[childPos]);
                     if (parentId > childId) { // error
                         Log.e(TAG, "Datamanager.readChildren: Scope merge: algorithm error 1");
                     } else {
@@ -828,7 +2219,7 @@ public class SqliteManager implements DataManager {
                                 Log.e(TAG, "Datamanager.readChildren: Scope merge: algorithm error 2");
                                 break;
                             }
-                            parentId = (Long) parentAccessor.getValue(parents[parentPos]);
+                            parentId = getLongValue(parentAccessor, parents[parentPos]);
                         }
                         if (parentId == childId) {
                             childData.valueAccessor.appendChild(rows[childPos], parents[parentPos]);
@@ -837,48 +2228,18 @@ public class SqliteManager implements DataManager {
                     childPos++;
                 }
 
-                List<ChildTableData> children = mSchema.getChildren(childClazz);
-                if (children != null) {
-                    for (ChildTableData c: children) {
-                        readChildren(id, idClazz, rows, c);
-                    }
-                }
+                readChildren(ids, idClazz, rows, plan);
             }
         }
     }
 
-    static class GlobalId {
-        public GlobalId(Class<?> tableClass, long recordId) {
-            this.tableClass = tableClass;
-            this.recordId = recordId;
-        }
-        Class<?> tableClass;
-        long recordId;
-    }
-
-    static Comparator<GlobalId> sGlobalIdComparator = new Comparator<GlobalId>() {
-        @Override
-        public int compare(GlobalId obj1, GlobalId obj2) {
-            if (obj1.tableClass == obj2.tableClass) {
-                if (obj1.recordId == obj2.recordId) {
-                    return 0;
-                }
-                else if (obj1.recordId < obj2.recordId) {
-                    return -1;
-                } else {
-                    return 1;
-                }
-
-            }
-            else if (obj1.tableClass.hashCode() < obj2.tableClass.hashCode()) {
-                return -1;
-            } else {
-                return -1;
-            }
-        }
-    };
-
-	private long write(Object scope, long parentId, boolean withChildren) throws Exception {
+	/**
+	 * Writes an entity and, optionally, its children.
+	 *
+	 * @param rootId ID of the aggregate root, written to {@link TableData#rootKey} column
+	 * @param batchStmts statements compiled for the current batch, or null if the write is not batched
+	 */
+	private long write(Object scope, long parentId, long rootId, boolean withChildren, Map<Integer, SQLiteStatement> batchStmts) throws Exception {
 		Class<?> clazz = scope.getClass();
 		TableQueryBuilder builder = mSchema.getQueryBuilder(clazz);
 		if (builder == null) {
@@ -887,61 +2248,94 @@ public class SqliteManager implements DataManager {
 		TableData tableData = builder.tableData;
 
 		boolean isInsert;
+		boolean isUnchanged = false;
 		long id;
 		{
-            id = (Long) tableData.primaryKey.valueAccessor.getValue(scope);
+            id = getLongValue(tableData.primaryKey.valueAccessor, scope);
             if (tableData.foreignKey != null) {
-                tableData.foreignKey.valueAccessor.setValue(parentId, scope);
+                setLongValue(tableData.foreignKey.valueAccessor, parentId, scope);
             }
 
             isInsert = id == 0;
-            SQLiteStatement stmt = null;
-            int stmtKey = 0;
-            try {
-                if (prepareStatements) {
-                    stmtKey = tableData.tableNo + (isInsert ? 1000 : 2000);
-                    synchronized (preparedStmts) {
-                        stmt = preparedStmts.remove(stmtKey);
+
+            ChangeTracker tracker = mChangeTracker;
+            Object[] values = null;
+            int[] changedParams = null;
+            if (tracker != null) {
+                values = builder.getRowMapper().snapshot(scope);
+                if (!isInsert) {
+                    Object[] oldValues = tracker.get(clazz, id);
+                    if (oldValues != null) {
+                        changedParams = RowMapper.getChangedParams(oldValues, values);
                     }
                 }
-                if (isInsert) {
-                    if (stmt == null) {
-                        String strStmt = builder.getInsertClause();
-                        stmt = mDb.compileStatement(strStmt);
-                    }
-                    bindValues(scope, tableData, stmt);
-
-                    id = stmt.executeInsert();
+            }
 
-                    if (id == -1) {
-                        throw new DataAccessException(String.format("SQLiteManager: Insert: constraint violation on table %s", tableData.tableName));
-                    }
-                    tableData.primaryKey.valueAccessor.setValue(id, scope);
-                } else {
-                    if (stmt == null) {
-                        String strStmt = builder.getUpdateClause();
-                        stmt = mDb.compileStatement(strStmt);
+            SQLiteStatement stmt = null;
+            String strStmt = null;
+            try {
+                if (changedParams != null && changedParams.length == 0) {
+                    isUnchanged = true;
+                } else if (changedParams != null && changedParams.length < values.length) {
+                    strStmt = builder.getUpdateClause(changedParams);
+                    stmt = acquireStatement(strStmt);
+                    builder.getRowMapper().bind(scope, stmt, changedParams);
+                    int paramNo = changedParams.length + 1;
+                    if (tableData.rootKey != null) {
+                        stmt.bindLong(paramNo, rootId);
+                        paramNo++;
                     }
-                    bindValues(scope, tableData, stmt);
-                    stmt.bindLong(tableData.fields.length, id);
+                    stmt.bindLong(paramNo, id);
 
                     int affected = stmt.executeUpdateDelete();
                     if (affected != 1) {
                         throw new DataAccessException(String.format("SQLiteManager: UPDATE: constraint violation on table %s", tableData.tableName));
                     }
-                }
-                if (prepareStatements) {
-                    synchronized (preparedStmts) {
-                        if (preparedStmts.containsKey(stmtKey)) {
-                            stmt.close();
-                        } else {
-                            preparedStmts.put(stmtKey, stmt);
+                    releaseStatement(strStmt, stmt);
+                    stmt = null;
+                } else {
+                    int stmtKey = tableData.tableNo + (isInsert ? 1000 : 2000);
+                    strStmt = isInsert ? builder.getInsertClause() : builder.getUpdateClause();
+                    if (batchStmts != null) {
+                        stmt = batchStmts.remove(stmtKey);
+                        if (stmt == null) {
+                            stmt = mDb.compileStatement(strStmt);
                         }
+                    } else {
+                        stmt = acquireStatement(strStmt);
                     }
-                } else {
-                    stmt.close();
+                    builder.getRowMapper().bind(scope, stmt);
+                    int paramNo = tableData.fields.length;
+                    if (tableData.rootKey != null) {
+                        stmt.bindLong(paramNo, rootId);
+                        paramNo++;
+                    }
+                    if (isInsert) {
+
+                        id = stmt.executeInsert();
+
+                        if (id == -1) {
+                            throw new DataAccessException(String.format("SQLiteManager: Insert: constraint violation on table %s", tableData.tableName));
+                        }
+                        setLongValue(tableData.primaryKey.valueAccessor, id, scope);
+                    } else {
+                        stmt.bindLong(paramNo, id);
+
+                        int affected = stmt.executeUpdateDelete();
+                        if (affected != 1) {
+                            throw new DataAccessException(String.format("SQLiteManager: UPDATE: constraint violation on table %s", tableData.tableName));
+                        }
+                    }
+                    if (batchStmts != null) {
+                        batchStmts.put(stmtKey, stmt);
+                    } else {
+                        releaseStatement(strStmt, stmt);
+                    }
+                    stmt = null;
+                }
+                if (tracker != null) {
+                    tracker.put(clazz, id, values);
                 }
-                stmt = null;
             }
             finally {
                 if (stmt != null) {
@@ -950,41 +2344,47 @@ public class SqliteManager implements DataManager {
             }
 		}
 
+		if (!isUnchanged) {
+			EntityCache cache = mEntityCache;
+			if (cache != null) {
+				cache.evict(clazz, id);
+			}
+			invalidateQueries(tableData);
+		}
+
 		if (withChildren) {
+			long childRootId = tableData.rootKey != null ? rootId : id;
 			List<ChildTableData> children = mSchema.getChildren(clazz);
+            // children that were not read with the entity are not deleted as orphans
+            FetchPlan partialPlan = isInsert ? null : mPartialEntities.get(scope);
             if (children != null) {
                 for (ChildTableData child: children) {
-                    Set<GlobalId> globalIds = new TreeSet<>(sGlobalIdComparator);
-                    if (!isInsert) {
-                        for (Class<?> childClass: child.children) {
-                            TableQueryBuilder.LinkedQueryBuilder childBuilder = mSchema.getLinkedQueryBuilder(childClass, clazz);
-                            Cursor cc = mDb.rawQuery(childBuilder.getSelectIdByLinkedIdQuery(), new String[]{Long.toString(id)});
-                            if (cc != null) {
-                                try {
-                                    while (cc.moveToNext()) {
-                                        globalIds.add(new GlobalId(childClass, cc.getLong(0)));
-                                    }
-                                } finally {
-                                    cc.close();
-                                }
-                            }
+                    boolean deleteOrphans = !isInsert && (partialPlan == null || partialPlan.getChild(child.fieldName) != null);
+                    long[][] existingIds = null;
+                    if (deleteOrphans) {
+                        existingIds = new long[child.children.length][];
+                        for (int i = 0; i < child.children.length; ++i) {
+                            TableQueryBuilder.LinkedQueryBuilder childBuilder = mSchema.getLinkedQueryBuilder(child.children[i], clazz);
+                            existingIds[i] = queryLongs(childBuilder.getSelectIdByLinkedIdQuery(), new String[]{Long.toString(id)});
                         }
                     }
 
+                    long[][] keptIds = new long[child.children.length][];
+                    int[] keptCounts = new int[child.children.length];
                     Object childObject = child.valueAccessor.getChildren(scope);
                     if (childObject != null) {
                         switch(child.linkType) {
                             case SINGLE: {
-                                long childId = write(childObject, id, true);
-                                globalIds.remove(new GlobalId(childObject.getClass(), childId));
+                                long childId = write(childObject, id, childRootId, true, batchStmts);
+                                addChildId(child, childObject.getClass(), childId, keptIds, keptCounts);
                             }
                             break;
 
                             case LIST: {
                                 List<?> list = (List<?>) childObject;
                                 for (Object lo: list) {
-                                    long childId = write(lo, id, true);
-                                    globalIds.remove(new GlobalId(lo.getClass(), childId));
+                                    long childId = write(lo, id, childRootId, true, batchStmts);
+                                    addChildId(child, lo.getClass(), childId, keptIds, keptCounts);
                                 }
                             }
                             break;
@@ -992,16 +2392,23 @@ public class SqliteManager implements DataManager {
                             case SET: {
                                 Set<?> set = (Set<?>) childObject;
                                 for (Object so: set) {
-                                    long childId = write(so, id, true);
-                                    globalIds.remove(new GlobalId(so.getClass(), childId));
+                                    long childId = write(so, id, childRootId, true, batchStmts);
+                                    addChildId(child, so.getClass(), childId, keptIds, keptCounts);
                                 }
                             }
                             break;
                         }
                     }
-                    if (!isInsert) {
-                        for (GlobalId gId: globalIds) {
-                            delete(gId.tableClass, gId.recordId);
+                    if (deleteOrphans) {
+                        for (int i = 0; i < child.children.length; ++i) {
+                            long[] orphanIds = existingIds[i];
+                            if (keptCounts[i] > 0) {
+                                int count = mergeIds(keptIds[i], keptCounts[i]);
+                                orphanIds = subtractIds(orphanIds, keptIds[i], count);
+                            }
+                            if (orphanIds.length > 0) {
+                                deleteRows(child.children[i], orphanIds);
+                            }
                         }
                     }
                 }
@@ -1012,123 +2419,299 @@ public class SqliteManager implements DataManager {
 	}
 
 
-	static void populateStorage(Object storage, FieldData[] fields, Cursor from) throws Exception {
-		if (storage == null || fields == null || from == null) return;
+    static long getLongValue(ColumnAccessor accessor, Object storage) throws Exception {
+        if (accessor instanceof LongColumnAccessor) {
+            return ((LongColumnAccessor) accessor).getLong(storage);
+        }
+        return (Long) accessor.getValue(storage);
+    }
 
-		for (int i = 0; i < fields.length; ++i) {
-			FieldData field = fields[i];
-			Object value;
-			switch (field.dataType) {
-			case BOOLEAN: {
-				boolean b = from.isNull(i) ? false : from.getInt(i) != 0;
-				value = b;
-			}
-			break;
+    static void setLongValue(ColumnAccessor accessor, long value, Object storage) throws Exception {
+        if (accessor instanceof LongColumnAccessor) {
+            ((LongColumnAccessor) accessor).setLong(value, storage);
+        } else {
+            accessor.setValue(value, storage);
+        }
+    }
 
-			case INT: {
-				int ii = from.isNull(i) ? 0 : from.getInt(i);
-				value = ii;
-			}
-			break;
+    private static void addChildId(ChildTableData child, Class<?> childClass, long childId, long[][] ids, int[] counts) {
+        for (int i = 0; i < child.children.length; ++i) {
+            if (child.children[i] == childClass) {
+                if (ids[i] == null) {
+                    ids[i] = new long[16];
+                } else if (counts[i] >= ids[i].length) {
+                    ids[i] = Arrays.copyOf(ids[i], ids[i].length * 2);
+                }
+                ids[i][counts[i]] = childId;
+                counts[i]++;
+                return;
+            }
+        }
+    }
 
-			case LONG: {
-				long l = from.isNull(i) ? 0L : from.getLong(i);
-				value = l;
-			}
-			break;
+    /**
+     * Returns IDs not present in the sorted unique array
+     *
+     * @param ids IDs, not necessarily sorted
+     * @param excluded sorted unique IDs
+     * @param excludedCount number of excluded IDs
+     */
+    static long[] subtractIds(long[] ids, long[] excluded, int excludedCount) {
+        long[] result = new long[ids.length];
+        int pos = 0;
+        for (long id: ids) {
+            if (Arrays.binarySearch(excluded, 0, excludedCount, id) < 0) {
+                result[pos] = id;
+                pos++;
+            }
+        }
+        return Arrays.copyOf(result, pos);
+    }
 
-			case DOUBLE: {
-				double d = from.isNull(i) ? 0.0 : from.getDouble(i);
-				value = d;
-			}
-			break;
+    /**
+     * Runs a single column query
+     *
+     * @return values of the first column
+     */
+    private long[] queryLongs(String query, String[] args) {
+        long[] values = new long[16];
+        int pos = 0;
+        Cursor cursor = mDb.rawQuery(query, args);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    if (pos >= values.length) {
+                        values = Arrays.copyOf(values, values.length * 2);
+                    }
+                    values[pos] = cursor.getLong(0);
+                    pos++;
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return Arrays.copyOf(values, pos);
+    }
 
-			case STRING: {
-				String s = from.isNull(i) ? null : from.getString(i);
-				value = s;
-			}
-			break;
-
-			case DATE: {
-				Date dt = null;
-				if (!from.isNull(i)) {
-					long l = from.getLong(i);
-					if (l > 0) {
-						dt = new Date(l);
-					}
-				}
-				value = dt;
-			}
-			break;
+    /**
+     * Runs a single column query
+     *
+     * @return values of the first column, null values are 0
+     */
+    private int[] queryInts(String query, String[] args) {
+        int[] values = new int[16];
+        int pos = 0;
+        Cursor cursor = mDb.rawQuery(query, args);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    if (pos >= values.length) {
+                        values = Arrays.copyOf(values, values.length * 2);
+                    }
+                    values[pos] = cursor.getInt(0);
+                    pos++;
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return Arrays.copyOf(values, pos);
+    }
 
-			case BYTE_ARRAY: {
-				byte[] ba = from.isNull(i) ? null : from.getBlob(i);
-				value = ba;
-			}
-			break;
+    /**
+     * Runs a single column query
+     *
+     * @return values of the first column, null values are 0
+     */
+    private double[] queryDoubles(String query, String[] args) {
+        double[] values = new double[16];
+        int pos = 0;
+        Cursor cursor = mDb.rawQuery(query, args);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    if (pos >= values.length) {
+                        values = Arrays.copyOf(values, values.length * 2);
+                    }
+                    values[pos] = cursor.getDouble(0);
+                    pos++;
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return Arrays.copyOf(values, pos);
+    }
 
-			default:
-				Log.w(TAG, String.format("Unsupported data type: \"%s\"", field.dataType.toString()));
-				continue;
-			}
-			field.valueAccessor.setValue(value, storage);
-		}
-	}
+    /**
+     * Deletes rows of the class and all their descendants with one statement per table.
+     * Detail rows with {@link WhenLinkBroken#UNLINK} links to deleted rows are unlinked
+     * and keywords are removed.
+     */
+    private void deleteRows(Class<?> clazz, long[] ids) throws Exception {
+        for (int start = 0; start < ids.length; start += MAX_SQL_VARIABLES) {
+            long[] chunk = Arrays.copyOfRange(ids, start, Math.min(ids.length, start + MAX_SQL_VARIABLES));
+            String[] args = TableQueryBuilder.getIdParameters(chunk);
+            String idSelect = TableQueryBuilder.getParameterList(args.length);
+            deleteRows(clazz, idSelect, args, false, clazz, mSchema.getParentClass(clazz) == null ? idSelect : null);
+        }
 
-    static void bindValues(Object storage, TableData table, SQLiteStatement stmt) throws Exception {
-        if (storage == null || stmt == null) return;
-        int paramNo = 1;
-        for (FieldData field: table.fields) {
-            if (field == table.primaryKey) {
-                continue;
-            }
-            Object o = field.valueAccessor.getValue(storage);
-            if (o != null) {
-                switch (field.dataType) {
-                    case BOOLEAN:
-                        boolean b = (Boolean)o ;
-                        stmt.bindLong(paramNo, b ? 1 : 0);
-                        break;
+        EntityCache cache = mEntityCache;
+        ChangeTracker tracker = mChangeTracker;
+        for (long id: ids) {
+            if (cache != null) {
+                cache.evict(clazz, id);
+            }
+            if (tracker != null) {
+                tracker.evict(clazz, id);
+            }
+        }
+    }
 
-                    case INT:
-                        int i = (Integer) o;
-                        stmt.bindLong(paramNo, i);
-                        break;
+    /**
+     * @param idSelect list of parameters or subquery selecting primary keys of the rows to delete
+     * @param evictClass evict all cached entities of the class, otherwise the caller evicts deleted IDs
+     * @param rootClass class of the deleted aggregate roots
+     * @param rootSelect list of parameters or subquery selecting IDs of deleted roots, null if the deleted rows are not roots
+     */
+    private void deleteRows(Class<?> clazz, String idSelect, String[] args, boolean evictClass, Class<?> rootClass, String rootSelect) throws Exception {
+        TableData tableData = mSchema.getTableData(clazz);
+        if (tableData == null) {
+            throw new DataIntegrityException(String.format("SQLiteManager: deleteRows: class %s is not registered.", clazz.getName()));
+        }
 
-                    case LONG:
-                        long l = (Long) o;
-                        stmt.bindLong(paramNo, l);
-                        break;
+        List<ChildTableData> children = mSchema.getChildren(clazz);
+        if (children != null) {
+            for (ChildTableData child: children) {
+                for (Class<?> childClass: child.children) {
+                    TableData childData = mSchema.getTableData(childClass);
+                    if (childData == null || childData.foreignKey == null) continue;
+                    String childSelect;
+                    if (rootSelect != null && childData.rootKey != null && childData.rootClass == rootClass) {
+                        childSelect = String.format("SELECT %s FROM %s WHERE %s IN (%s)",
+                                childData.primaryKey.columnName, childData.tableName, childData.rootKey.columnName, rootSelect);
+                    } else {
+                        childSelect = String.format("SELECT %s FROM %s WHERE %s IN (%s)",
+                                childData.primaryKey.columnName, childData.tableName, childData.foreignKey.columnName, idSelect);
+                    }
+                    deleteRows(childClass, childSelect, args, true, rootClass, rootSelect);
+                }
+            }
+        }
 
-                    case DOUBLE:
-                        double d = (Double) o;
-                        stmt.bindDouble(paramNo, d);
-                        break;
+        deleteTableRows(clazz, tableData, idSelect, args, evictClass);
+    }
 
-                    case STRING:
-                        stmt.bindString(paramNo, (String) o);
-                        break;
+    /**
+     * Deletes rows listed in the ID table of the class and all their descendants.
+     * Every level is materialized into its own temporary ID table,
+     * so statements do not nest deeper with the depth of the tree.
+     * See {@link #prepareIdTable(TableData)}
+     *
+     * @param rootClass class of the deleted aggregate roots
+     * @param rootSelect subquery selecting IDs of deleted roots, null if the deleted rows are not roots
+     */
+    private void deleteMarkedRows(Class<?> clazz, Class<?> rootClass, String rootSelect) throws Exception {
+        TableData tableData = mSchema.getTableData(clazz);
+        if (tableData == null) {
+            throw new DataIntegrityException(String.format("SQLiteManager: deleteMarkedRows: class %s is not registered.", clazz.getName()));
+        }
+        String idSelect = String.format(Locale.getDefault(), "SELECT id FROM %s", getIdTable(tableData));
 
-                    case DATE: {
-                        Date dt = (Date) o;
-                        long ts = dt.getTime();
-                        stmt.bindLong(paramNo, ts);
+        List<ChildTableData> children = mSchema.getChildren(clazz);
+        if (children != null) {
+            for (ChildTableData child: children) {
+                for (Class<?> childClass: child.children) {
+                    TableData childData = mSchema.getTableData(childClass);
+                    if (childData == null || childData.foreignKey == null) continue;
+                    String childIdTable = prepareIdTable(childData);
+                    if (rootSelect != null && childData.rootKey != null && childData.rootClass == rootClass) {
+                        mDb.execSQL(String.format("INSERT OR IGNORE INTO %s (id) SELECT %s FROM %s WHERE %s IN (%s)",
+                                childIdTable, childData.primaryKey.columnName, childData.tableName, childData.rootKey.columnName, rootSelect));
+                    } else {
+                        mDb.execSQL(String.format("INSERT OR IGNORE INTO %s (id) SELECT %s FROM %s WHERE %s IN (%s)",
+                                childIdTable, childData.primaryKey.columnName, childData.tableName, childData.foreignKey.columnName, idSelect));
                     }
-                    break;
+                    deleteMarkedRows(childClass, rootClass, rootSelect);
+                }
+            }
+        }
 
-                    case BYTE_ARRAY:
-                        byte[] ba = (byte[]) o;
-                        stmt.bindBlob(paramNo, ba);
-                        break;
+        deleteTableRows(clazz, tableData, idSelect, new String[0], true);
+        mDb.execSQL(String.format("DELETE FROM %s", getIdTable(tableData)));
+    }
 
-                    default:
-                        Log.w(TAG, String.format("Unsupported data type: \"%s\"", field.dataType.toString()));
-                        break;
+    private static String getIdTable(TableData tableData) {
+        return String.format(Locale.getDefault(), "gora_ids_%d", tableData.tableNo);
+    }
+
+    /**
+     * Creates or clears the temporary table of record IDs to delete
+     *
+     * @return table name
+     */
+    private String prepareIdTable(TableData tableData) {
+        String idTable = getIdTable(tableData);
+        mDb.execSQL(String.format("CREATE TEMP TABLE IF NOT EXISTS %s (id INTEGER PRIMARY KEY)", idTable));
+        mDb.execSQL(String.format("DELETE FROM %s", idTable));
+        return idTable;
+    }
+
+    /**
+     * Deletes rows of a single table, unlinks their details and removes their keywords
+     *
+     * @param idSelect list of parameters or subquery selecting primary keys of the rows to delete
+     * @param evictClass evict all cached entities of the class
+     */
+    private void deleteTableRows(Class<?> clazz, TableData tableData, String idSelect, String[] args, boolean evictClass) {
+        EntityCache cache = mEntityCache;
+        ChangeTracker tracker = mChangeTracker;
+
+        List<TableLinkData> links = mSchema.getDetailLinks(clazz);
+        if (links != null) {
+            for (TableLinkData link: links) {
+                if (link.whenBroken == WhenLinkBroken.UNLINK) {
+                    TableData linkData = mSchema.getTableData(link.detailClass);
+                    if (linkData != null) {
+                        mDb.execSQL(String.format("UPDATE %s SET %s = 0 WHERE %<s IN (%s)",
+                                linkData.tableName, link.detailField.columnName, idSelect), args);
+                        invalidateQueries(linkData);
+                        if (tracker != null) {
+                            tracker.evictClass(link.detailClass);
+                        }
+                        if (cache != null) {
+                            cache.evictClass(link.detailClass);
+                            evictAncestors(cache, link.detailClass);
+                        }
+                    }
                 }
-            } else {
-                stmt.bindNull(paramNo);
             }
-            paramNo += 1;
+        }
+
+        if (tableData.hasKeywords) {
+            mDb.execSQL(String.format("DELETE FROM %s_KW WHERE docid IN (%s)", tableData.tableName, idSelect), args);
+        }
+
+        executeUpdateDelete(String.format("DELETE FROM %s WHERE %s IN (%s)", tableData.tableName, tableData.primaryKey.columnName, idSelect), args);
+
+        invalidateQueries(tableData);
+        if (evictClass) {
+            if (tracker != null) {
+                tracker.evictClass(clazz);
+            }
+            if (cache != null) {
+                cache.evictClass(clazz);
+            }
+        }
+    }
+
+    private int executeUpdateDelete(String sql, String[] args) {
+        SQLiteStatement stmt = acquireStatement(sql);
+        try {
+            stmt.bindAllArgsAsStrings(args);
+            return stmt.executeUpdateDelete();
+        } finally {
+            releaseStatement(sql, stmt);
         }
     }
 
@@ -1150,5 +2733,10 @@ public class SqliteManager implements DataManager {
         }
     }
 
+    /**
+     * SQLite limit on the number of parameters in a single statement
+     */
+    static final int MAX_SQL_VARIABLES = 999;
+
     private static final String TAG = "GORA";
 }
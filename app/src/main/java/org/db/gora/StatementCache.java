@@ -0,0 +1,82 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora;
+
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of compiled statements keyed by SQL.
+ * <p>A statement is removed from the cache while in use and returned by {@link #release(String, SQLiteStatement)},
+ * so {@link #close()} called from another thread never closes a statement being executed.
+ * Every thread owns its cache, the monitor is contended only by {@link #close()}.
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+final class StatementCache {
+    private final LinkedHashMap<String, SQLiteStatement> mStatements;
+    private boolean mClosed;
+
+    StatementCache(final int maxSize) {
+        mStatements = new LinkedHashMap<String, SQLiteStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SQLiteStatement> eldest) {
+                if (size() > maxSize) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Takes a statement out of the cache
+     *
+     * @return compiled statement or null
+     */
+    synchronized SQLiteStatement acquire(String sql) {
+        return mStatements.remove(sql);
+    }
+
+    /**
+     * Returns a statement into the cache
+     *
+     * @return false if the statement is not cached and should be closed by the caller
+     */
+    synchronized boolean release(String sql, SQLiteStatement stmt) {
+        if (mClosed || mStatements.containsKey(sql)) {
+            return false;
+        }
+        stmt.clearBindings();
+        mStatements.put(sql, stmt);
+        return true;
+    }
+
+    synchronized boolean isClosed() {
+        return mClosed;
+    }
+
+    synchronized void close() {
+        mClosed = true;
+        for (SQLiteStatement stmt: mStatements.values()) {
+            stmt.close();
+        }
+        mStatements.clear();
+    }
+}
@@ -34,6 +34,13 @@ public class TableData {
     public IndexData[] indice;
     public boolean hasKeywords;
 
+    /**
+     * Column with the ID of the root aggregate. Defined for descendant tables only.
+     * See {@link SqlSchema#registerRootKey(Class, String)}
+     */
+    public FieldData rootKey;
+    public Class<?> rootClass;
+
     public FieldData getFieldByName(String name) {
         if (name == null) return null;
 
@@ -53,7 +60,7 @@ public class TableData {
                 }
                 if (fd.fieldName != null) {
                     if (fd.fieldName.equalsIgnoreCase(name)) {
-                        return primaryKey;
+                        return fd;
                     }
                 }
             }
@@ -26,4 +26,6 @@ public class TableLinkData {
 	public Class<?> detailClass;
 	public FieldData detailField;
 	public WhenLinkBroken whenBroken;
+	/** Accessor of the field that receives the linked entity, null if not defined */
+	public ColumnAccessor entityAccessor;
 }
@@ -14,9 +14,10 @@
 
 package org.db.gora;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
   * Provides frequently used queries
@@ -31,6 +32,33 @@ final class TableQueryBuilder {
 		this.tableData = tableData;
 	}
 
+    private RowMapper rowMapper = null;
+    /**
+     * Returns compiled row mapper for the table.
+     * The mapper reads rows selected with {@link #getSelectClause()} and binds
+     * {@link #getInsertClause()}/{@link #getUpdateClause()} parameters.
+     */
+    RowMapper getRowMapper() {
+        if (rowMapper == null) {
+            rowMapper = new RowMapper(tableData);
+        }
+        return rowMapper;
+    }
+
+    final Map<Class<?>, ProjectionMapper> projectionMappers = new ConcurrentHashMap<>();
+    /**
+     * Returns compiled mapper of the projection class.
+     * See {@link ProjectionMapper#forClass(TableData, Class)}
+     */
+    ProjectionMapper getProjectionMapper(Class<?> projectionClass) throws DataIntegrityException {
+        ProjectionMapper mapper = projectionMappers.get(projectionClass);
+        if (mapper == null) {
+            mapper = ProjectionMapper.forClass(tableData, projectionClass);
+            projectionMappers.put(projectionClass, mapper);
+        }
+        return mapper;
+    }
+
     private String selectByIdQuery = null;
     public String getSelectByIdQuery() {
         if (selectByIdQuery == null) {
@@ -41,6 +69,76 @@ final class TableQueryBuilder {
         return selectByIdQuery;
     }
 
+    /**
+     * Builds a query that selects the rows with any of idCount primary keys
+     *
+     * @param idCount number of ID parameters
+     * @return SELECT ... WHERE id IN (?, ...) query
+     */
+    public String getSelectByIdsQuery(int idCount) {
+        if (idCount == 1) {
+            return getSelectByIdQuery();
+        }
+        int bucket = getIdBucket(idCount);
+        String query = bucket >= 0 ? selectByIdsQueries[bucket] : null;
+        if (query == null) {
+            query = String.format(Locale.getDefault(), "%s FROM %s AS t%d WHERE t%d.%s IN (%s)",
+                    getSelectClause(), tableData.tableName, tableData.tableNo,
+                    tableData.tableNo, tableData.primaryKey.columnName, getParameterList(idCount));
+            if (bucket >= 0) {
+                selectByIdsQueries[bucket] = query;
+            }
+        }
+        return query;
+    }
+    private final String[] selectByIdsQueries = new String[ID_BUCKETS];
+
+    /**
+     * Number of distinct ID parameter counts produced by {@link #getIdParameters(long[])}
+     */
+    static final int ID_BUCKETS = 11;
+
+    /**
+     * Returns bucket index of ID parameter count or -1
+     */
+    static int getIdBucket(int idCount) {
+        if (idCount == SqliteManager.MAX_SQL_VARIABLES) {
+            return ID_BUCKETS - 1;
+        }
+        if (idCount > 0 && Integer.bitCount(idCount) == 1) {
+            int bucket = Integer.numberOfTrailingZeros(idCount);
+            return bucket < ID_BUCKETS - 1 ? bucket : -1;
+        }
+        return -1;
+    }
+
+    /**
+     * Converts IDs to query arguments. The number of arguments is rounded up to a power of two
+     * or {@link SqliteManager#MAX_SQL_VARIABLES} and padded with the last ID,
+     * so queries by IDs use a limited number of distinct SQL strings.
+     *
+     * @param ids record IDs, at most {@link SqliteManager#MAX_SQL_VARIABLES}
+     * @return IN (...) arguments
+     */
+    static String[] getIdParameters(long[] ids) {
+        if (ids.length == 0) {
+            return new String[0];
+        }
+        int count = 1;
+        while (count < ids.length) {
+            count <<= 1;
+        }
+        if (count > SqliteManager.MAX_SQL_VARIABLES) {
+            count = SqliteManager.MAX_SQL_VARIABLES;
+        }
+        String[] args = new String[count];
+        for (int i = 0; i < ids.length; ++i) {
+            args[i] = Long.toString(ids[i]);
+        }
+        Arrays.fill(args, ids.length, count, args[ids.length - 1]);
+        return args;
+    }
+
     private String deleteByIdWhereClause = null;
     public String getDeleteByIdWhereClause() {
         if (deleteByIdWhereClause == null) {
@@ -90,6 +188,10 @@ final class TableQueryBuilder {
 					builder.append(field.columnName);
 				}
 			}
+			if (tableData.rootKey != null) {
+				builder.append(", ");
+				builder.append(tableData.rootKey.columnName);
+			}
 			builder.append(") VALUES ( ");
 			int paramNo = 1;
 			for (FieldData field: tableData.fields) {
@@ -102,6 +204,10 @@ final class TableQueryBuilder {
 					paramNo += 1;
 				}
 			}
+			if (tableData.rootKey != null) {
+				builder.append(", :");
+				builder.append(paramNo);
+			}
 			builder.append(")");
 
 			insertClause = builder.toString();
@@ -129,6 +235,14 @@ final class TableQueryBuilder {
 					paramNo += 1;
 				}
 			}
+			if (tableData.rootKey != null) {
+				builder.append(", ");
+				builder.append(tableData.rootKey.columnName);
+				builder.append(" = :");
+				builder.append(paramNo);
+
+				paramNo += 1;
+			}
 			builder.append(" WHERE ");
 			builder.append(tableData.primaryKey.columnName);
 			builder.append(" = :");
@@ -139,8 +253,63 @@ final class TableQueryBuilder {
 		return updateClause;
 	}
 
+	/**
+	 * Builds UPDATE statement for a subset of columns. The root ID, if defined, follows the columns.
+	 * The primary key is the last parameter.
+	 *
+	 * @param paramIndexes indexes of updated columns in {@link RowMapper#params} order
+	 * @return UPDATE ... SET column = :1, ... WHERE pk = :n statement
+	 */
+	String getUpdateClause(int[] paramIndexes) {
+		FieldData[] paramFields = getRowMapper().paramFields;
+		StringBuilder builder = new StringBuilder();
+		builder.append("UPDATE ");
+		builder.append(tableData.tableName);
+		builder.append(" SET ");
+		int paramNo = 1;
+		for (int paramIndex: paramIndexes) {
+			if (paramNo > 1) {
+				builder.append(", ");
+			}
+			builder.append(paramFields[paramIndex].columnName);
+			builder.append(" = :");
+			builder.append(paramNo);
 
-    final Map<Class<?>, LinkedQueryBuilder> linkedBuilders = new HashMap<>();
+			paramNo += 1;
+		}
+		if (tableData.rootKey != null) {
+			builder.append(", ");
+			builder.append(tableData.rootKey.columnName);
+			builder.append(" = :");
+			builder.append(paramNo);
+
+			paramNo += 1;
+		}
+		builder.append(" WHERE ");
+		builder.append(tableData.primaryKey.columnName);
+		builder.append(" = :");
+		builder.append(paramNo);
+
+		return builder.toString();
+	}
+
+
+    /**
+     * Returns comma separated list of SQL parameters
+     *
+     * @param count number of parameters
+     * @return ?, ?, ...
+     */
+    static String getParameterList(int count) {
+        StringBuilder builder = new StringBuilder(count * 3);
+        for (int i = 0; i < count; ++i) {
+            if (i > 0) builder.append(", ");
+            builder.append('?');
+        }
+        return builder.toString();
+    }
+
+    final Map<Class<?>, LinkedQueryBuilder> linkedBuilders = new ConcurrentHashMap<>();
 
 	final class LinkedQueryBuilder {
 		final TableData[] pathToId;
@@ -152,37 +321,86 @@ final class TableQueryBuilder {
 			return tableData;
 		}
 
+        RowMapper getRowMapper() {
+            return TableQueryBuilder.this.getRowMapper();
+        }
+
+        /**
+         * Returns true if the ID is the aggregate root and the table has root ID column,
+         * so no joins through intermediate tables are needed.
+         */
+        boolean isLinkedByRootKey() {
+            return tableData.rootKey != null && pathToId.length > 1
+                    && pathToId[pathToId.length - 1].tableClass == tableData.rootClass;
+        }
+
         public TableData getParentTableData() {
       	    return pathToId.length > 0 ? pathToId[0] : null;
       	}
 
+		private String fromByLinkedIdClause = null;
+		private String linkedIdColumn = null;
+		private void buildFromByLinkedIdClause() {
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format(Locale.getDefault(), " FROM %s AS t%d", tableData.tableName, tableData.tableNo));
+
+			if (isLinkedByRootKey()) {
+				linkedIdColumn = String.format(Locale.getDefault(), "t%d.%s", tableData.tableNo, tableData.rootKey.columnName);
+			} else if (pathToId.length > 0) {
+				TableData lastTable = tableData;
+				for (int i = 0; i < (pathToId.length - 1); i++) {
+					TableData thisTable = pathToId[i];
+					builder.append(String.format(Locale.getDefault(), " INNER JOIN %s AS t%d ON t%d.%s = t%d.%s",
+							thisTable.tableName, thisTable.tableNo,
+							thisTable.tableNo, thisTable.primaryKey.columnName,
+							lastTable.tableNo, lastTable.foreignKey.columnName
+							));
+					lastTable = thisTable;
+				}
+				linkedIdColumn = String.format(Locale.getDefault(), "t%d.%s", lastTable.tableNo, lastTable.foreignKey.columnName);
+			} else {
+				linkedIdColumn = String.format(Locale.getDefault(), "t%d.%s", tableData.tableNo, tableData.primaryKey.columnName);
+			}
+
+			fromByLinkedIdClause = builder.toString();
+		}
+
 		private String fromWhereByLinkedIdClause = null;
 		public String getFromWhereByLinkedIdClause() {
 			if (fromWhereByLinkedIdClause == null) {
-	    		StringBuilder builder = new StringBuilder();
-	    		builder.append(String.format(Locale.getDefault(), " FROM %s AS t%d", tableData.tableName, tableData.tableNo));
-	    		
-	    		if (pathToId.length > 0) {
-	    			TableData lastTable = tableData;
-	    			for (int i = 0; i < (pathToId.length - 1); i++) {
-	    				TableData thisTable = pathToId[i];
-	        			builder.append(String.format(Locale.getDefault(), " INNER JOIN %s AS t%d ON t%d.%s = t%d.%s",
-	        					thisTable.tableName, thisTable.tableNo,
-	        					thisTable.tableNo, thisTable.primaryKey.columnName,
-	        					lastTable.tableNo, lastTable.foreignKey.columnName
-	        					));
-	        			lastTable = thisTable;
-	    			}
-	        		builder.append(String.format(Locale.getDefault(), " WHERE t%d.%s = ?", lastTable.tableNo, lastTable.foreignKey.columnName));
-	    		} else {
-	        		builder.append(String.format(Locale.getDefault(), " WHERE t%d.%s = ?", tableData.tableNo, tableData.primaryKey.columnName));
-	    		}
-
-	    		fromWhereByLinkedIdClause = builder.toString();
+				if (fromByLinkedIdClause == null) {
+					buildFromByLinkedIdClause();
+				}
+				fromWhereByLinkedIdClause = String.format("%s WHERE %s = ?", fromByLinkedIdClause, linkedIdColumn);
 			}
 			return fromWhereByLinkedIdClause;
 		}
 
+		/**
+		 * Builds a query that selects the rows linked to any of idCount IDs
+		 *
+		 * @param idCount number of ID parameters
+		 * @return SELECT ... WHERE linked_id IN (?, ...) query
+		 */
+		public String getSelectByIdsQuery(int idCount) {
+			if (idCount == 1) {
+				return getSelectByIdQuery();
+			}
+			int bucket = getIdBucket(idCount);
+			String query = bucket >= 0 ? selectByLinkedIdsQueries[bucket] : null;
+			if (query == null) {
+				if (fromByLinkedIdClause == null) {
+					buildFromByLinkedIdClause();
+				}
+				query = String.format("%s %s WHERE %s IN (%s)", getSelectClause(), fromByLinkedIdClause, linkedIdColumn, getParameterList(idCount));
+				if (bucket >= 0) {
+					selectByLinkedIdsQueries[bucket] = query;
+				}
+			}
+			return query;
+		}
+		private final String[] selectByLinkedIdsQueries = new String[ID_BUCKETS];
+
         private String selectByLinkedIdQuery = null;
 		public String getSelectByIdQuery() {
 			if (selectByLinkedIdQuery == null) {
@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora.accessors;
+
+import org.db.gora.BooleanColumnAccessor;
+
+import java.lang.reflect.Field;
+
+/**
+ * Boolean field value accessor.
+ * See {@link org.db.gora.BooleanColumnAccessor}
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+final public class BooleanFieldAccessor implements BooleanColumnAccessor {
+    final Field mField;
+
+    public BooleanFieldAccessor(Field field) {
+        this.mField = field;
+    }
+
+    @Override
+    public Boolean getValue(Object storage) throws IllegalAccessException {
+        return mField.getBoolean(storage);
+    }
+
+    @Override
+    public void setValue(Object value, Object storage) throws IllegalAccessException {
+        mField.setBoolean(storage, value != null && (Boolean) value);
+    }
+
+    @Override
+    public boolean getBoolean(Object storage) throws IllegalAccessException {
+        return mField.getBoolean(storage);
+    }
+
+    @Override
+    public void setBoolean(boolean value, Object storage) throws IllegalAccessException {
+        mField.setBoolean(storage, value);
+    }
+}
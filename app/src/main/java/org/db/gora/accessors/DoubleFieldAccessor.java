@@ -14,8 +14,8 @@
 
 package org.db.gora.accessors;
 
-import org.db.gora.ColumnAccessor;
 import org.db.gora.DataAccessException;
+import org.db.gora.DoubleColumnAccessor;
 
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
@@ -23,12 +23,12 @@ import java.math.BigDecimal;
 /**
  * Double field value accessor.
  * Supports the following Java classes: Double, Float, BigDecimal
- * See {@link org.db.gora.ColumnAccessor}
+ * See {@link org.db.gora.DoubleColumnAccessor}
  *
  * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
  */
 
-final public class DoubleFieldAccessor implements ColumnAccessor {
+final public class DoubleFieldAccessor implements DoubleColumnAccessor {
 
     final Field mField;
     final DoubleColumnClass mJavaClass;
@@ -77,4 +77,30 @@ final public class DoubleFieldAccessor implements ColumnAccessor {
         }
         mField.set(storage, value);
     }
+
+    @Override
+    public double getDouble(Object storage) throws IllegalAccessException {
+        if (mJavaClass == DoubleColumnClass.BigDecimal) {
+            BigDecimal value = (BigDecimal) mField.get(storage);
+            return value != null ? value.doubleValue() : 0.0;
+        }
+        return mField.getDouble(storage);
+    }
+
+    @Override
+    public void setDouble(double value, Object storage) throws IllegalAccessException {
+        switch (mJavaClass) {
+            case Float:
+                mField.setFloat(storage, (float) value);
+                break;
+
+            case BigDecimal:
+                mField.set(storage, BigDecimal.valueOf(value));
+                break;
+
+            default:
+                mField.setDouble(storage, value);
+                break;
+        }
+    }
 }
@@ -14,7 +14,7 @@
 
 package org.db.gora.accessors;
 
-import org.db.gora.ColumnAccessor;
+import org.db.gora.DoubleColumnAccessor;
 
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
@@ -24,12 +24,12 @@ import java.math.BigDecimal;
  * <p>Requires both getter and setter
  *
  * Supports the following Java classes: Double, Float, BigDecimal
- * See {@link org.db.gora.ColumnAccessor}
+ * See {@link org.db.gora.DoubleColumnAccessor}
  *
  * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
  */
 
-final public class DoublePropertyAccessor implements ColumnAccessor {
+final public class DoublePropertyAccessor implements DoubleColumnAccessor {
     final Method mGetter;
     final Method mSetter;
     final DoubleColumnClass mJavaClass;
@@ -77,4 +77,14 @@ final public class DoublePropertyAccessor implements ColumnAccessor {
         }
         mSetter.invoke(storage, value);
     }
+
+    @Override
+    public double getDouble(Object storage) throws Exception {
+        return getValue(storage);
+    }
+
+    @Override
+    public void setDouble(double value, Object storage) throws Exception {
+        setValue(value, storage);
+    }
 }
@@ -0,0 +1,47 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora.accessors;
+
+import org.db.gora.ChildAccessor;
+import org.db.gora.ColumnAccessor;
+
+/**
+ * Defines the factory of accessors generated at compile time by gora annotation processor.
+ * <p>The generated class has the name of the storage class with nested class names
+ * joined by '_' and {@link #CLASS_SUFFIX} suffix, and is placed in the same package.
+ * The accessors access fields and methods directly, without reflection.
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+public interface GeneratedAccessors {
+    String CLASS_SUFFIX = "_GoraAccessors";
+
+    /**
+     * Returns column accessor
+     *
+     * @param fieldName name of the field marked with {@link org.db.gora.schema.SqlColumn}
+     * @return column accessor or null if the accessor has not been generated
+     */
+    ColumnAccessor getColumnAccessor(String fieldName);
+
+    /**
+     * Returns child accessor
+     *
+     * @param fieldName name of the field marked with {@link org.db.gora.schema.SqlChild}
+     * @return child accessor or null if the accessor has not been generated
+     */
+    ChildAccessor getChildAccessor(String fieldName);
+}
@@ -14,20 +14,20 @@
 
 package org.db.gora.accessors;
 
-import org.db.gora.ColumnAccessor;
 import org.db.gora.DataAccessException;
+import org.db.gora.IntColumnAccessor;
 
 import java.lang.reflect.Field;
 
 /**
  * Integer field value accessor.
  * Supports the following Java classes: Integer, Short, Byte
- * See {@link org.db.gora.ColumnAccessor}
+ * See {@link org.db.gora.IntColumnAccessor}
  *
  * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
  */
 
-final public class IntFieldAccessor implements ColumnAccessor {
+final public class IntFieldAccessor implements IntColumnAccessor {
 
     final Field mField;
     final IntColumnClass mJavaClass;
@@ -77,4 +77,26 @@ final public class IntFieldAccessor implements ColumnAccessor {
 
         mField.set(storage, value);
     }
+
+    @Override
+    public int getInt(Object storage) throws IllegalAccessException {
+        return mField.getInt(storage);
+    }
+
+    @Override
+    public void setInt(int value, Object storage) throws IllegalAccessException {
+        switch (mJavaClass) {
+            case Short:
+                mField.setShort(storage, (short) (value & 0xffff));
+                break;
+
+            case Byte:
+                mField.setByte(storage, (byte) (value & 0xff));
+                break;
+
+            default:
+                mField.setInt(storage, value);
+                break;
+        }
+    }
 }
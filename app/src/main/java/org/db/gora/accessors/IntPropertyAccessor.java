@@ -14,7 +14,7 @@
 
 package org.db.gora.accessors;
 
-import org.db.gora.ColumnAccessor;
+import org.db.gora.IntColumnAccessor;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -24,12 +24,12 @@ import java.lang.reflect.Method;
  * <p>Requires both getter and setter
  *
  * Supports the following Java types: Integer, Short, Byte
- * See {@link org.db.gora.ColumnAccessor}
+ * See {@link org.db.gora.IntColumnAccessor}
  *
  * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
  */
 
-final public class IntPropertyAccessor implements ColumnAccessor {
+final public class IntPropertyAccessor implements IntColumnAccessor {
 
     final Method mGetter;
     final Method mSetter;
@@ -77,4 +77,14 @@ final public class IntPropertyAccessor implements ColumnAccessor {
         }
         mSetter.invoke(storage, value);
     }
+
+    @Override
+    public int getInt(Object storage) throws InvocationTargetException, IllegalAccessException {
+        return getValue(storage);
+    }
+
+    @Override
+    public void setInt(int value, Object storage) throws InvocationTargetException, IllegalAccessException {
+        setValue(value, storage);
+    }
 }
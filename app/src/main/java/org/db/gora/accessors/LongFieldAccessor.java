@@ -0,0 +1,54 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora.accessors;
+
+import org.db.gora.LongColumnAccessor;
+
+import java.lang.reflect.Field;
+
+/**
+ * Long field value accessor.
+ * See {@link org.db.gora.LongColumnAccessor}
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+final public class LongFieldAccessor implements LongColumnAccessor {
+    final Field mField;
+
+    public LongFieldAccessor(Field field) {
+        this.mField = field;
+    }
+
+    @Override
+    public Long getValue(Object storage) throws IllegalAccessException {
+        return mField.getLong(storage);
+    }
+
+    @Override
+    public void setValue(Object value, Object storage) throws IllegalAccessException {
+        mField.setLong(storage, value != null ? (Long) value : 0L);
+    }
+
+    @Override
+    public long getLong(Object storage) throws IllegalAccessException {
+        return mField.getLong(storage);
+    }
+
+    @Override
+    public void setLong(long value, Object storage) throws IllegalAccessException {
+        mField.setLong(storage, value);
+    }
+}
@@ -14,8 +14,12 @@
 
 package org.db.gora.schema;
 
+import android.util.Log;
+
+import org.db.gora.ChildAccessor;
 import org.db.gora.ChildDataType;
 import org.db.gora.ChildTableData;
+import org.db.gora.ColumnAccessor;
 import org.db.gora.DataIntegrityException;
 import org.db.gora.FieldData;
 import org.db.gora.FieldDataType;
@@ -23,14 +27,17 @@ import org.db.gora.IndexData;
 import org.db.gora.SqlSchema;
 import org.db.gora.TableData;
 import org.db.gora.TableLinkData;
+import org.db.gora.accessors.BooleanFieldAccessor;
 import org.db.gora.accessors.DoubleFieldAccessor;
 import org.db.gora.accessors.DoublePropertyAccessor;
+import org.db.gora.accessors.GeneratedAccessors;
 import org.db.gora.accessors.GenericFieldAccessor;
 import org.db.gora.accessors.GenericPropertyAccessor;
 import org.db.gora.accessors.IntFieldAccessor;
 import org.db.gora.accessors.IntPropertyAccessor;
 import org.db.gora.accessors.ListFieldChildAccessor;
 import org.db.gora.accessors.ListMethodChildAccessor;
+import org.db.gora.accessors.LongFieldAccessor;
 import org.db.gora.accessors.SetFieldChildAccessor;
 import org.db.gora.accessors.SetMethodChildAccessor;
 import org.db.gora.accessors.SimpleFieldChildAccessor;
@@ -85,6 +92,11 @@ public class SchemaBuilder {
 		for (TableLinkData l: links) {
 			schema.registerEntityLink(l);
 		}
+
+		SqlTable table = clazz.getAnnotation(SqlTable.class);
+		if (table != null && table.rootKey().length() > 0) {
+			schema.registerRootKey(clazz, table.rootKey());
+		}
 	}
 
 	static void extractSchema(Class<?> clazz, List<TableData> tables, List<ChildTableData> children, List<TableLinkData> links)
@@ -105,7 +117,7 @@ public class SchemaBuilder {
 		}
 	}
 
-	static FieldDataType resolveSimpleDataType(Class<?> clazz) throws DataIntegrityException {
+	public static FieldDataType resolveSimpleDataType(Class<?> clazz) throws DataIntegrityException {
 		if (clazz.isPrimitive()) {
 			if (clazz == Byte.TYPE) return FieldDataType.INT;
 			if (clazz == Short.TYPE) return FieldDataType.INT;
@@ -198,6 +210,12 @@ public class SchemaBuilder {
 						case DOUBLE:
 							fd.valueAccessor = new DoubleFieldAccessor(field);
 							break;
+						case LONG:
+							fd.valueAccessor = new LongFieldAccessor(field);
+							break;
+						case BOOLEAN:
+							fd.valueAccessor = new BooleanFieldAccessor(field);
+							break;
 						case STRING:
 							fd.valueAccessor = new StringFieldAccessor(field);
 							break;
@@ -207,6 +225,13 @@ public class SchemaBuilder {
 					}
 				}
 
+				if (classInfo.generated != null) {
+					ColumnAccessor accessor = classInfo.generated.getColumnAccessor(field.getName());
+					if (accessor != null) {
+						fd.valueAccessor = accessor;
+					}
+				}
+
 				fields.add(fd);
 				if (column.pk()) {
 					tableData.primaryKey = fd;
@@ -248,6 +273,7 @@ public class SchemaBuilder {
 
 				ChildTableData tld = new ChildTableData();
 				tld.parent = classInfo.clazz;
+				tld.fieldName = field.getName();
 
 				Class<?> clazz = field.getType();
 				if (List.class.isAssignableFrom(clazz)) {
@@ -328,6 +354,13 @@ public class SchemaBuilder {
 					}
 				}
 
+				if (classInfo.generated != null) {
+					ChildAccessor accessor = classInfo.generated.getChildAccessor(field.getName());
+					if (accessor != null) {
+						tld.valueAccessor = accessor;
+					}
+				}
+
 				tld.children = childClasses;
 				result.add(tld);
 			}
@@ -339,11 +372,42 @@ public class SchemaBuilder {
 		Class<?> clazz;
 		ArrayList<Field> fields = new ArrayList<>();
 		Map<String, Method> methods = new TreeMap<>();
+		GeneratedAccessors generated;
+	}
+
+	/**
+	 * Loads accessors generated by gora annotation processor
+	 *
+	 * @param clazz Java class containing sql schema annotation
+	 * @return generated accessor factory or null if the processor has not been run for the class
+	 */
+	static GeneratedAccessors loadGeneratedAccessors(Class<?> clazz) {
+		String className = clazz.getName();
+		Package pkg = clazz.getPackage();
+		if (pkg != null && className.startsWith(pkg.getName() + ".")) {
+			int prefix = pkg.getName().length() + 1;
+			className = className.substring(0, prefix) + className.substring(prefix).replace('$', '_');
+		} else {
+			className = className.replace('$', '_');
+		}
+		className = className.concat(GeneratedAccessors.CLASS_SUFFIX);
+
+		try {
+			Class<?> generated = Class.forName(className, true, clazz.getClassLoader());
+			if (GeneratedAccessors.class.isAssignableFrom(generated)) {
+				return (GeneratedAccessors) generated.newInstance();
+			}
+		} catch (ClassNotFoundException ignored) {
+		} catch (Exception e) {
+			Log.w(TAG, String.format("Cannot instantiate generated accessors %s", className), e);
+		}
+		return null;
 	}
 
 	static ClassInfo extractClassInfo(Class<?> clazz) {
 		ClassInfo classInfo = new ClassInfo();
 		classInfo.clazz = clazz;
+		classInfo.generated = loadGeneratedAccessors(clazz);
 
 		Class<?> c = clazz;
 		while (c != null) {
@@ -411,9 +475,27 @@ public class SchemaBuilder {
 							String.format("Field %s.%s is not marked as sql column.",
 									field.getDeclaringClass().getName(), field.getName()));
 				}
+				if (link.fetchInto().length() > 0) {
+					Field entityField = null;
+					for (Field f: classInfo.fields) {
+						if (f.getName().equals(link.fetchInto())) {
+							entityField = f;
+							break;
+						}
+					}
+					if (entityField == null || !entityField.getType().isAssignableFrom(link.entity())) {
+						throw new DataIntegrityException(
+								String.format("Field %s.%s does not accept %s entity.",
+										classInfo.clazz.getName(), link.fetchInto(), link.entity().getName()));
+					}
+					entityField.setAccessible(true);
+					tld.entityAccessor = new GenericFieldAccessor(entityField);
+				}
 				result.add(tld);
 			}
 		}
 		return result;
 	}
+
+	private static final String TAG = "GORA";
 }
@@ -26,4 +26,10 @@ import java.lang.annotation.Target;
 public @interface SqlLinkedEntity {
     Class<?> entity();
     WhenLinkBroken whenBroken() default WhenLinkBroken.NONE;
+
+    /**
+     * Name of the field that receives the linked entity, usually transient.
+     * Empty if not used. See {@link org.db.gora.SqliteManager#resolveLinks(java.util.Collection)}
+     */
+    String fetchInto() default "";
 }
@@ -23,4 +23,10 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface SqlTable {
     String name();
+
+    /**
+     * Name of the root ID column added to all descendant tables of the aggregate.
+     * Empty if not used. See {@link org.db.gora.SqlSchema#registerRootKey(Class, String)}
+     */
+    String rootKey() default "";
 }
@@ -0,0 +1,459 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.db.gora.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates direct-access column and child accessors for classes marked with SqlTable annotation.
+ * <p>For each storage class the processor writes a class implementing
+ * org.db.gora.accessors.GeneratedAccessors into the same package.
+ * {@code SchemaBuilder} picks it up at runtime and falls back to reflection
+ * for the fields that cannot be accessed directly (private fields without getter and setter).
+ *
+ * @author Sergey Kolupaev &lt;skolupaev@gmail.com&gt;
+ */
+
+@SupportedAnnotationTypes(AccessorProcessor.SQL_TABLE)
+public class AccessorProcessor extends AbstractProcessor {
+    static final String SQL_TABLE = "org.db.gora.schema.SqlTable";
+    static final String SQL_COLUMN = "org.db.gora.schema.SqlColumn";
+    static final String SQL_CHILD = "org.db.gora.schema.SqlChild";
+    static final String CLASS_SUFFIX = "_GoraAccessors";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement tableAnnotation = processingEnv.getElementUtils().getTypeElement(SQL_TABLE);
+        if (tableAnnotation == null) return false;
+
+        for (Element element: roundEnv.getElementsAnnotatedWith(tableAnnotation)) {
+            if (element.getKind() != ElementKind.CLASS) continue;
+            TypeElement type = (TypeElement) element;
+            if (!isAccessible(type)) {
+                note(type, "Storage class is not accessible. Reflection accessors will be used.");
+                continue;
+            }
+            try {
+                generate(type);
+            } catch (IOException e) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        String.format("Cannot generate accessors: %s", e.getMessage()), type);
+            }
+        }
+        return false;
+    }
+
+    static boolean isAccessible(TypeElement type) {
+        Element e = type;
+        while (e != null && (e.getKind().isClass() || e.getKind().isInterface())) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) return false;
+            if (e.getEnclosingElement() != null && e.getEnclosingElement().getKind().isClass()) {
+                if (!e.getModifiers().contains(Modifier.STATIC)) return false;
+            }
+            e = e.getEnclosingElement();
+        }
+        return true;
+    }
+
+    void generate(TypeElement type) throws IOException {
+        String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String className = getGeneratedName(type);
+        String storageName = erasure(type.asType());
+
+        List<VariableElement> fields = new ArrayList<>();
+        Map<String, ExecutableElement> methods = new HashMap<>();
+        collectMembers(type, fields, methods);
+
+        StringBuilder columns = new StringBuilder();
+        StringBuilder children = new StringBuilder();
+        for (VariableElement field: fields) {
+            AnnotationMirror column = getAnnotation(field, SQL_COLUMN);
+            if (column != null) {
+                String body = getColumnAccessor(packageName, storageName, field, column, methods);
+                if (body != null) {
+                    columns.append(String.format("            case \"%s\":\n                return %s;\n", field.getSimpleName(), body));
+                } else {
+                    note(field, "Column is not accessible. Reflection accessor will be used.");
+                }
+            }
+            AnnotationMirror child = getAnnotation(field, SQL_CHILD);
+            if (child != null) {
+                String body = getChildAccessor(storageName, field, child, methods);
+                if (body != null) {
+                    children.append(String.format("            case \"%s\":\n                return %s;\n", field.getSimpleName(), body));
+                } else {
+                    note(field, "Child is not accessible. Reflection accessor will be used.");
+                }
+            }
+        }
+
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(
+                packageName.length() > 0 ? packageName + "." + className : className, type);
+        PrintWriter writer = new PrintWriter(file.openWriter());
+        try {
+            if (packageName.length() > 0) {
+                writer.printf("package %s;\n\n", packageName);
+            }
+            writer.printf("/**\n * Generated by %s. Do not edit.\n */\n", AccessorProcessor.class.getName());
+            writer.printf("public final class %s implements org.db.gora.accessors.GeneratedAccessors {\n", className);
+            writer.print("    @Override\n");
+            writer.print("    public org.db.gora.ColumnAccessor getColumnAccessor(String fieldName) {\n");
+            writer.print("        switch (fieldName) {\n");
+            writer.print(columns);
+            writer.print("        }\n        return null;\n    }\n\n");
+            writer.print("    @Override\n");
+            writer.print("    public org.db.gora.ChildAccessor getChildAccessor(String fieldName) {\n");
+            writer.print("        switch (fieldName) {\n");
+            writer.print(children);
+            writer.print("        }\n        return null;\n    }\n\n");
+            writer.print("    static <E extends Enum<E>> E toEnum(Class<E> type, Object value) {\n");
+            writer.print("        if (value == null) return null;\n");
+            writer.print("        try {\n            return Enum.valueOf(type, (String) value);\n");
+            writer.print("        } catch (IllegalArgumentException e) {\n            return null;\n        }\n    }\n");
+            writer.print("}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    static String getGeneratedName(TypeElement type) {
+        StringBuilder builder = new StringBuilder();
+        Element e = type;
+        while (e != null && (e.getKind().isClass() || e.getKind().isInterface())) {
+            if (builder.length() > 0) {
+                builder.insert(0, '_');
+            }
+            builder.insert(0, e.getSimpleName());
+            e = e.getEnclosingElement();
+        }
+        builder.append(CLASS_SUFFIX);
+        return builder.toString();
+    }
+
+    /**
+     * Collects instance fields and public methods from the class up to the root of the hierarchy.
+     * Fields and methods of a subclass hide the ones of its superclasses with the same name.
+     */
+    void collectMembers(TypeElement type, List<VariableElement> fields, Map<String, ExecutableElement> methods) {
+        Set<String> fieldNames = new HashSet<>();
+        TypeElement current = type;
+        while (current != null) {
+            for (Element member: current.getEnclosedElements()) {
+                if (member.getModifiers().contains(Modifier.STATIC)) continue;
+                String name = member.getSimpleName().toString();
+                if (member.getKind() == ElementKind.FIELD) {
+                    if (fieldNames.add(name)) {
+                        fields.add((VariableElement) member);
+                    }
+                } else if (member.getKind() == ElementKind.METHOD) {
+                    if (!member.getModifiers().contains(Modifier.PUBLIC)) continue;
+                    if (!methods.containsKey(name)) {
+                        methods.put(name, (ExecutableElement) member);
+                    }
+                }
+            }
+            TypeMirror superclass = current.getSuperclass();
+            if (superclass.getKind() != TypeKind.DECLARED) break;
+            current = (TypeElement) ((DeclaredType) superclass).asElement();
+        }
+    }
+
+    boolean isFieldAccessible(String packageName, VariableElement field) {
+        if (field.getModifiers().contains(Modifier.PRIVATE)) return false;
+        if (field.getModifiers().contains(Modifier.FINAL)) return false;
+        if (field.getModifiers().contains(Modifier.PUBLIC)) return true;
+        String fieldPackage = processingEnv.getElementUtils().getPackageOf(field).getQualifiedName().toString();
+        return fieldPackage.equals(packageName);
+    }
+
+    String getColumnAccessor(String packageName, String storageName, VariableElement field,
+                             AnnotationMirror column, Map<String, ExecutableElement> methods) {
+        String getterName = getStringValue(column, "getter");
+        String setterName = getStringValue(column, "setter");
+
+        TypeMirror type;
+        String getExpr;
+        String setPrefix;
+        String setSuffix;
+        if (getterName.length() > 0 && setterName.length() > 0) {
+            ExecutableElement getter = methods.get(getterName);
+            ExecutableElement setter = methods.get(setterName);
+            if (getter == null || setter == null) return null;
+            if (getter.getParameters().size() != 0 || setter.getParameters().size() != 1) return null;
+            type = getter.getReturnType();
+            getExpr = String.format("((%s) storage).%s()", storageName, getterName);
+            setPrefix = String.format("((%s) storage).%s(", storageName, setterName);
+            setSuffix = ")";
+        } else {
+            if (!isFieldAccessible(packageName, field)) return null;
+            type = field.asType();
+            getExpr = String.format("((%s) storage).%s", storageName, field.getSimpleName());
+            setPrefix = String.format("((%s) storage).%s = ", storageName, field.getSimpleName());
+            setSuffix = "";
+        }
+
+        String get;
+        String set;
+        String primitiveType = null;
+        String primitiveName = null;
+        String primitiveGet = null;
+        String primitiveSet = null;
+        switch (type.getKind()) {
+            case BYTE:
+            case SHORT:
+            case INT: {
+                get = type.getKind() == TypeKind.INT
+                        ? String.format("return %s;", getExpr)
+                        : String.format("return (int) %s;", getExpr);
+                primitiveType = "int";
+                primitiveName = "Int";
+                primitiveGet = String.format("return %s;", getExpr);
+                if (type.getKind() == TypeKind.INT) {
+                    set = "value != null ? (Integer) value : 0";
+                    primitiveSet = "value";
+                } else {
+                    set = String.format("value != null ? (%s) (int) (Integer) value : (%<s) 0", type.getKind().name().toLowerCase());
+                    primitiveSet = String.format("(%s) value", type.getKind().name().toLowerCase());
+                }
+            }
+            break;
+
+            case LONG:
+                get = String.format("return %s;", getExpr);
+                set = "value != null ? (Long) value : 0L";
+                primitiveType = "long";
+                primitiveName = "Long";
+                primitiveGet = get;
+                primitiveSet = "value";
+                break;
+
+            case FLOAT:
+                // boxed as Double, the column type of float fields
+                get = String.format("return Double.valueOf(%s);", getExpr);
+                set = "value != null ? (float) (double) (Double) value : 0.0f";
+                primitiveType = "double";
+                primitiveName = "Double";
+                primitiveGet = String.format("return %s;", getExpr);
+                primitiveSet = "(float) value";
+                break;
+
+            case DOUBLE:
+                get = String.format("return %s;", getExpr);
+                set = "value != null ? (Double) value : 0.0";
+                primitiveType = "double";
+                primitiveName = "Double";
+                primitiveGet = get;
+                primitiveSet = "value";
+                break;
+
+            case BOOLEAN:
+                get = String.format("return %s;", getExpr);
+                set = "value != null && (Boolean) value";
+                primitiveType = "boolean";
+                primitiveName = "Boolean";
+                primitiveGet = get;
+                primitiveSet = "value";
+                break;
+
+            case ARRAY:
+                if (!"byte[]".equals(type.toString())) return null;
+                get = String.format("return %s;", getExpr);
+                set = "(byte[]) value";
+                break;
+
+            case DECLARED: {
+                TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+                String name = element.getQualifiedName().toString();
+                if (element.getKind() == ElementKind.ENUM) {
+                    get = String.format("%s v = %s;\n                        return v != null ? v.name() : null;", name, getExpr);
+                    set = String.format("toEnum(%s.class, value)", name);
+                } else if (name.equals("java.lang.String")) {
+                    get = String.format("return %s;", getExpr);
+                    set = "(String) value";
+                } else if (name.equals("java.util.Date")) {
+                    get = String.format("return %s;", getExpr);
+                    set = "(java.util.Date) value";
+                } else if (name.equals("java.math.BigDecimal")) {
+                    get = String.format("java.math.BigDecimal v = %s;\n                        return v != null ? v.doubleValue() : 0.0;", getExpr);
+                    set = "value != null ? java.math.BigDecimal.valueOf((Double) value) : null";
+                } else {
+                    return null;
+                }
+            }
+            break;
+
+            default:
+                return null;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("new org.db.gora.%sColumnAccessor() {\n", primitiveName != null ? primitiveName : ""));
+        builder.append("                    @Override\n");
+        builder.append("                    public Object getValue(Object storage) {\n");
+        builder.append("                        ").append(get).append("\n");
+        builder.append("                    }\n\n");
+        builder.append("                    @Override\n");
+        builder.append("                    public void setValue(Object value, Object storage) {\n");
+        builder.append("                        ").append(setPrefix).append(set).append(setSuffix).append(";\n");
+        builder.append("                    }\n");
+        if (primitiveName != null) {
+            builder.append("\n");
+            builder.append("                    @Override\n");
+            builder.append(String.format("                    public %s get%s(Object storage) {\n", primitiveType, primitiveName));
+            builder.append("                        ").append(primitiveGet).append("\n");
+            builder.append("                    }\n\n");
+            builder.append("                    @Override\n");
+            builder.append(String.format("                    public void set%s(%s value, Object storage) {\n", primitiveName, primitiveType));
+            builder.append("                        ").append(setPrefix).append(primitiveSet).append(setSuffix).append(";\n");
+            builder.append("                    }\n");
+        }
+        builder.append("                }");
+        return builder.toString();
+    }
+
+    String getChildAccessor(String storageName, VariableElement field,
+                            AnnotationMirror child, Map<String, ExecutableElement> methods) {
+        String getterName = getStringValue(child, "getter");
+        String setterName = getStringValue(child, "setter");
+
+        TypeMirror fieldType = processingEnv.getTypeUtils().erasure(field.asType());
+        boolean isList = isAssignable(fieldType, "java.util.List");
+        boolean isSet = !isList && isAssignable(fieldType, "java.util.Set");
+
+        String append;
+        String get;
+        if (getterName.length() > 0) {
+            ExecutableElement getter = methods.get(getterName);
+            if (getter == null || getter.getParameters().size() != 0) return null;
+            get = String.format("((%s) storage).%s()", storageName, getterName);
+            if (isList || isSet) {
+                append = String.format("java.util.Collection c = %s;\n" +
+                        "                        if (c != null) {\n" +
+                        "                            c.add(child);\n" +
+                        "                        }", get);
+            } else {
+                ExecutableElement setter = setterName.length() > 0 ? methods.get(setterName) : null;
+                if (setter == null || setter.getParameters().size() != 1) return null;
+                append = String.format("((%s) storage).%s((%s) child);", storageName, setterName,
+                        erasure(setter.getParameters().get(0).asType()));
+            }
+        } else {
+            if (!field.getModifiers().contains(Modifier.PUBLIC)) return null;
+            if (field.getModifiers().contains(Modifier.FINAL)) return null;
+            String fieldExpr = String.format("((%s) storage).%s", storageName, field.getSimpleName());
+            get = fieldExpr;
+            if (isList || isSet) {
+                String collection = getCollectionClass(fieldType, isList ? "java.util.ArrayList" : "java.util.HashSet");
+                if (collection == null) return null;
+                append = String.format("if (%s == null) {\n" +
+                        "                            %s = new %s();\n" +
+                        "                        }\n" +
+                        "                        ((java.util.Collection) %s).add(child);", fieldExpr, fieldExpr, collection, fieldExpr);
+            } else {
+                append = String.format("%s = (%s) child;", fieldExpr, erasure(fieldType));
+            }
+        }
+
+        return "new org.db.gora.ChildAccessor() {\n" +
+                "                    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n" +
+                "                    @Override\n" +
+                "                    public void appendChild(Object child, Object storage) {\n" +
+                "                        " + append + "\n" +
+                "                    }\n\n" +
+                "                    @Override\n" +
+                "                    public Object getChildren(Object storage) {\n" +
+                "                        return " + get + ";\n" +
+                "                    }\n" +
+                "                }";
+    }
+
+    String getCollectionClass(TypeMirror type, String defaultClass) {
+        if (type.getKind() != TypeKind.DECLARED) return null;
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        if (element.getKind() == ElementKind.INTERFACE) {
+            return isAssignable(processingEnv.getElementUtils().getTypeElement(defaultClass).asType(), type) ? defaultClass : null;
+        }
+        if (element.getModifiers().contains(Modifier.ABSTRACT)) return null;
+        if (!element.getModifiers().contains(Modifier.PUBLIC)) return null;
+        return element.getQualifiedName().toString();
+    }
+
+    boolean isAssignable(TypeMirror type, String className) {
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(className);
+        return element != null && isAssignable(type, element.asType());
+    }
+
+    boolean isAssignable(TypeMirror type, TypeMirror to) {
+        return processingEnv.getTypeUtils().isAssignable(type, processingEnv.getTypeUtils().erasure(to));
+    }
+
+    String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    static AnnotationMirror getAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror mirror: element.getAnnotationMirrors()) {
+            TypeElement annotation = (TypeElement) mirror.getAnnotationType().asElement();
+            if (annotation.getQualifiedName().contentEquals(annotationName)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    static String getStringValue(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry: mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                Object value = entry.getValue().getValue();
+                return value != null ? value.toString() : "";
+            }
+        }
+        return "";
+    }
+
+    void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+}